@@ -0,0 +1,65 @@
+package com.deyan.mealplanner.config;
+
+import com.deyan.mealplanner.dto.RecipeDetailsDTO;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the Jackson cache serializer with {@link CompactRecipeSerializer} on a typical
+ * recipe (12 ingredients). Run with {@code ./gradlew jmh}; the bytes per entry of each
+ * format are printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecipeSerializerBenchmark {
+
+    @Param({"json", "compact", "compact-deflate"})
+    String format;
+
+    RedisSerializer<Object> serializer;
+    RecipeDetailsDTO recipe;
+    byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        serializer = switch (format) {
+            case "json" -> new GenericJackson2JsonRedisSerializer();
+            case "compact" -> new CompactRecipeSerializer(Integer.MAX_VALUE);
+            default -> new CompactRecipeSerializer(0);
+        };
+
+        List<RecipeDetailsDTO.ExtendedIngredient> ingredients = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            ingredients.add(new RecipeDetailsDTO.ExtendedIngredient(
+                    10_000 + i, "ingredient number " + i, new BigDecimal("125.5"), "g"));
+        }
+        recipe = new RecipeDetailsDTO(716429L, "Pasta with Garlic, Scallions, Cauliflower & Breadcrumbs",
+                45, 2,
+                new RecipeDetailsDTO.Nutrition(new BigDecimal("543.36"), new BigDecimal("16.84"),
+                        new BigDecimal("19.2"), new BigDecimal("83.7")),
+                ingredients, "https://example.com/recipes/716429");
+
+        encoded = serializer.serialize(recipe);
+        System.out.printf("%n[%s] bytes per entry: %d%n", format, encoded.length);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return serializer.serialize(recipe);
+    }
+
+    @Benchmark
+    public Object decode() {
+        return serializer.deserialize(encoded);
+    }
+}
@@ -0,0 +1,95 @@
+package com.deyan.mealplanner.service;
+
+import com.deyan.mealplanner.service.RecipeCatalogIndex.Range;
+import org.jooq.DSLContext;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.deyan.mealplanner.jooq.tables.Recipe.RECIPE;
+import static org.jooq.impl.DSL.power;
+
+/**
+ * Compares {@link RecipeCatalogIndex} with the equivalent SQL on the {@code recipe} table:
+ * a range query ("dinners between 500 and 700 kcal with at least 40 g protein") and a
+ * 10-nearest-neighbour query on the macro vector.
+ * <p>
+ * Needs a migrated database with a populated catalog; run with
+ * {@code ./gradlew jmh -Djmh.db.url=jdbc:postgresql://localhost:5432/mealplanner -Djmh.db.user=... -Djmh.db.password=...}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecipeCatalogIndexBenchmark {
+
+    Connection connection;
+    DSLContext dsl;
+    RecipeService recipes;
+    RecipeCatalogIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection(
+                System.getProperty("jmh.db.url", "jdbc:postgresql://localhost:5432/mealplanner"),
+                System.getProperty("jmh.db.user", "postgres"),
+                System.getProperty("jmh.db.password", "postgres"));
+        dsl = DSL.using(connection, SQLDialect.POSTGRES);
+        recipes = new RecipeService(dsl, 30, new IngredientRecipeIndex(dsl));
+        index = new RecipeCatalogIndex(dsl, recipes);
+        index.refresh();
+        System.out.printf("%n[catalog] recipes in index: %d%n", index.snapshot().size());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public int[] rangeIndex() {
+        return index.snapshot().find(Range.between(500, 700), Range.atLeast(40), Range.ANY, Range.ANY);
+    }
+
+    @Benchmark
+    public List<Long> rangeSql() {
+        return dsl.select(RECIPE.ID)
+                .from(RECIPE)
+                .where(recipes.isFresh())
+                .and(RECIPE.CALORIES.between(BigDecimal.valueOf(500), BigDecimal.valueOf(700)))
+                .and(RECIPE.PROTEIN.ge(BigDecimal.valueOf(40)))
+                .orderBy(RECIPE.CALORIES)
+                .fetch(RECIPE.ID);
+    }
+
+    @Benchmark
+    public int[] nearestIndex() {
+        return index.snapshot().nearest(650, 45, 60, 20, 10);
+    }
+
+    @Benchmark
+    public List<Long> nearestSql() {
+        var distance = power(RECIPE.CALORIES.minus(650).div(MealPlanService.THRESHOLD_KCAL), 2)
+                .plus(power(RECIPE.PROTEIN.minus(45).div(MealPlanService.THRESHOLD_MACRO), 2))
+                .plus(power(RECIPE.CARBOHYDRATES.minus(60).div(MealPlanService.THRESHOLD_MACRO), 2))
+                .plus(power(RECIPE.FAT.minus(20).div(MealPlanService.THRESHOLD_MACRO), 2));
+        return dsl.select(RECIPE.ID)
+                .from(RECIPE)
+                .where(recipes.isFresh())
+                .and(RECIPE.PROTEIN.isNotNull())
+                .and(RECIPE.CARBOHYDRATES.isNotNull())
+                .and(RECIPE.FAT.isNotNull())
+                .orderBy(distance)
+                .limit(10)
+                .fetch(RECIPE.ID);
+    }
+}
@@ -0,0 +1,271 @@
+package com.deyan.mealplanner.config;
+
+import com.deyan.mealplanner.dto.RecipeDetailsDTO;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Cache value serializer that stores {@link RecipeDetailsDTO} in a compact, schema-versioned
+ * binary form instead of JSON with embedded class names.
+ * <p>
+ * Layout: {@code MAGIC, VERSION, flags, [raw length], body}. When the body is larger than
+ * the compression threshold it is deflated and {@link #FLAG_DEFLATE} is set.
+ * Any other value type is delegated to the JSON serializer, and so are reads that do not
+ * start with {@link #MAGIC}, so entries written before this serializer was enabled stay readable.
+ */
+public class CompactRecipeSerializer implements RedisSerializer<Object> {
+
+    static final byte MAGIC = (byte) 0xC7;     // never the first byte of a JSON document
+    static final byte VERSION = 1;
+    static final int FLAG_DEFLATE = 1;
+
+    private final RedisSerializer<Object> fallback;
+    private final int compressThreshold;
+
+    /**
+     * @param compressThreshold Bodies larger than this many bytes are deflated.
+     */
+    public CompactRecipeSerializer(int compressThreshold) {
+        this(new GenericJackson2JsonRedisSerializer(), compressThreshold);
+    }
+
+    public CompactRecipeSerializer(RedisSerializer<Object> fallback, int compressThreshold) {
+        this.fallback = fallback;
+        this.compressThreshold = compressThreshold;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (!(value instanceof RecipeDetailsDTO recipe)) {
+            return fallback.serialize(value);
+        }
+        try {
+            byte[] body = encode(recipe);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.length + 8);
+            out.write(MAGIC);
+            out.write(VERSION);
+            if (body.length > compressThreshold) {
+                out.write(FLAG_DEFLATE);
+                writeVarInt(out, body.length);
+                out.write(deflate(body));
+            } else {
+                out.write(0);
+                out.write(body);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new SerializationException("Could not encode recipe " + recipe.id(), e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != MAGIC) {
+            return fallback.deserialize(bytes);          // legacy JSON entry
+        }
+        if (bytes[1] != VERSION) {
+            throw new SerializationException("Unknown recipe encoding version " + bytes[1]);
+        }
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 3, bytes.length - 3));
+            if ((bytes[2] & FLAG_DEFLATE) != 0) {
+                int rawLength = readVarInt(in);
+                in = new DataInputStream(new ByteArrayInputStream(inflate(in.readAllBytes(), rawLength)));
+            }
+            return decode(in);
+        } catch (IOException | DataFormatException e) {
+            throw new SerializationException("Could not decode cached recipe", e);
+        }
+    }
+
+    /* ---------- body ---------- */
+
+    private static byte[] encode(RecipeDetailsDTO r) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(buf);
+
+        writeNullableLong(out, r.id());
+        writeString(out, r.title());
+        writeVarInt(out, r.readyInMinutes());
+        writeVarInt(out, r.servings());
+        writeString(out, r.sourceUrl());
+
+        RecipeDetailsDTO.Nutrition n = r.nutrition();
+        out.writeBoolean(n != null);
+        if (n != null) {
+            writeDecimal(out, n.calories());
+            writeDecimal(out, n.protein());
+            writeDecimal(out, n.fat());
+            writeDecimal(out, n.carbohydrates());
+        }
+
+        List<RecipeDetailsDTO.ExtendedIngredient> ingredients = r.extendedIngredients();
+        writeVarInt(out, ingredients == null ? 0 : ingredients.size() + 1);   // 0 = null list
+        if (ingredients != null) {
+            for (RecipeDetailsDTO.ExtendedIngredient i : ingredients) {
+                writeVarLong(out, i.id());
+                writeString(out, i.name());
+                writeDecimal(out, i.amount());
+                writeString(out, i.unit());
+            }
+        }
+        out.flush();
+        return buf.toByteArray();
+    }
+
+    private static RecipeDetailsDTO decode(DataInputStream in) throws IOException {
+        Long id = readNullableLong(in);
+        String title = readString(in);
+        int readyInMinutes = readVarInt(in);
+        int servings = readVarInt(in);
+        String sourceUrl = readString(in);
+
+        RecipeDetailsDTO.Nutrition nutrition = null;
+        if (in.readBoolean()) {
+            nutrition = new RecipeDetailsDTO.Nutrition(
+                    readDecimal(in), readDecimal(in), readDecimal(in), readDecimal(in));
+        }
+
+        int count = readVarInt(in);
+        List<RecipeDetailsDTO.ExtendedIngredient> ingredients = null;
+        if (count > 0) {
+            ingredients = new ArrayList<>(count - 1);
+            for (int i = 1; i < count; i++) {
+                ingredients.add(new RecipeDetailsDTO.ExtendedIngredient(
+                        readVarLong(in), readString(in), readDecimal(in), readString(in)));
+            }
+        }
+        return new RecipeDetailsDTO(id, title, readyInMinutes, servings, nutrition, ingredients, sourceUrl);
+    }
+
+    /* ---------- compression ---------- */
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 16);
+            byte[] chunk = new byte[512];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] compressed, int rawLength) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] raw = new byte[rawLength];
+            int n = 0;
+            while (n < rawLength && !inflater.finished()) {
+                n += inflater.inflate(raw, n, rawLength - n);
+            }
+            return raw;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /* ---------- primitives ---------- */
+
+    private static void writeVarInt(OutputStream out, int value) throws IOException {
+        writeVarLong(out, value & 0xFFFFFFFFL);
+    }
+
+    private static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static int readVarInt(DataInput in) throws IOException {
+        return (int) readVarLong(in);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static void writeNullableLong(DataOutputStream out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            writeVarLong(out, value);
+        }
+    }
+
+    private static Long readNullableLong(DataInputStream in) throws IOException {
+        return in.readBoolean() ? readVarLong(in) : null;
+    }
+
+    /** Length-prefixed UTF-8; a length of 0 encodes {@code null}. */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = readVarInt(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Scale plus unscaled two's-complement bytes; a byte count of 0 encodes {@code null}. */
+    private static void writeDecimal(DataOutputStream out, BigDecimal d) throws IOException {
+        if (d == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] unscaled = d.unscaledValue().toByteArray();
+        writeVarInt(out, unscaled.length + 1);
+        out.write(unscaled);
+        writeVarInt(out, d.scale());
+    }
+
+    private static BigDecimal readDecimal(DataInputStream in) throws IOException {
+        int length = readVarInt(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] unscaled = new byte[length - 1];
+        in.readFully(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), readVarInt(in));
+    }
+}
@@ -1,11 +1,15 @@
 package com.deyan.mealplanner.config;
 
 import org.jooq.DSLContext;
+import org.jooq.ExecuteListenerProvider;
 import org.jooq.SQLDialect;
 import org.jooq.conf.Settings;
 import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultConfiguration;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.TransactionAwareDataSourceProxy;
 
 import javax.sql.DataSource;
 
@@ -15,19 +19,26 @@ public class JooqConfig {
      * Creates a DSLContext bean configured with the application's DataSource
      * and the PostgreSQL SQL dialect.
      * This is the primary interface for using JOOQ to construct and execute queries in a type-safe manner.
+     * The DataSource is wrapped in a {@link TransactionAwareDataSourceProxy} so queries join Spring-managed
+     * transactions ({@code @Transactional}, {@code TransactionTemplate}) instead of auto-committing on
+     * their own connection.
      *
      * @param dataSource The injected Spring-managed {@link DataSource} for connecting to the database.
+     * @param listeners  Every {@link ExecuteListenerProvider} bean in the context (exception translation,
+     *                   statement counting in tests, ...).
      * @return A fully configured {@link DSLContext} instance.
      */
     @Bean
-    public DSLContext dslContext(DataSource dataSource) {
+    public DSLContext dslContext(DataSource dataSource, ObjectProvider<ExecuteListenerProvider> listeners) {
 
         Settings settings = new Settings();
 
-        return DSL.using(
-                dataSource,
-                SQLDialect.POSTGRES,
-                settings);
+        DefaultConfiguration configuration = new DefaultConfiguration();
+        configuration.set(new TransactionAwareDataSourceProxy(dataSource));
+        configuration.set(SQLDialect.POSTGRES);
+        configuration.set(settings);
+        configuration.set(listeners.orderedStream().toArray(ExecuteListenerProvider[]::new));
 
+        return DSL.using(configuration);
     }
 }
@@ -1,13 +1,18 @@
 package com.deyan.mealplanner.config;
 import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.interceptor.SimpleKeyGenerator;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import org.springframework.data.redis.cache.*;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.*;
 
 @Configuration
@@ -38,24 +43,83 @@ public class RedisConfig {
 
     /**
      * Defines the {@link CacheManager} that Spring uses for caching operations.
-     * This version sets a time-to-live (TTL) of 24 hours for the "recipes" cache
-     * and uses JSON serialization for values.
+     * Caches: "recipes" (24h TTL), "nutrition" (widget results) and "nutrition-failures"
+     * (short-lived negative entries for widgets that failed). Every Redis cache gets a bounded
+     * in-heap L1 in front of it, see {@link TwoLevelCacheManager}.
      *
-     * @param cf The Redis connection factory.
+     * @param cf         The Redis connection factory.
+     * @param publisher  Template used to broadcast L1 invalidations.
+     * @param serializer {@link #cacheValueSerializer value serializer} of the Redis caches.
+     * @param l1MaxSize  Maximum number of entries per L1 cache.
+     * @param l1Ttl      Time after write at which an L1 entry expires.
+     * @param lockTtl    Expiry of the cross-node lock held while one node loads a missing key.
+     * @param lockWait   How long other nodes wait for that load before loading themselves.
+     * @param nutritionTtl        TTL of cached nutrition widgets.
+     * @param nutritionFailureTtl TTL of a remembered widget failure.
      * @return Configured {@link CacheManager} with per-cache settings.
      */
     @Bean
-    public CacheManager cacheManager(RedisConnectionFactory cf) {
+    public TwoLevelCacheManager cacheManager(RedisConnectionFactory cf,
+                                             StringRedisTemplate publisher,
+                                             RedisSerializer<Object> serializer,
+                                             @Value("${mealplanner.cache.l1.max-size:10000}") long l1MaxSize,
+                                             @Value("${mealplanner.cache.l1.ttl:10m}") Duration l1Ttl,
+                                             @Value("${mealplanner.cache.lock-ttl:10s}") Duration lockTtl,
+                                             @Value("${mealplanner.cache.lock-wait:5s}") Duration lockWait,
+                                             @Value("${mealplanner.cache.nutrition-ttl:7d}") Duration nutritionTtl,
+                                             @Value("${mealplanner.cache.nutrition-failure-ttl:15m}") Duration nutritionFailureTtl) {
         RedisCacheConfiguration cfg = RedisCacheConfiguration.defaultCacheConfig()
                 .entryTtl(Duration.ofHours(24))
-                .serializeValuesWith(
-                        RedisSerializationContext.SerializationPair.fromSerializer(
-                                new GenericJackson2JsonRedisSerializer()
-                        )
-                );
-        return RedisCacheManager.builder(cf)
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(serializer));
+        RedisCacheManager redis = RedisCacheManager.builder(cf)
                 .withCacheConfiguration("recipes", cfg)
+                .withCacheConfiguration("nutrition", cfg.entryTtl(nutritionTtl))
+                .withCacheConfiguration("nutrition-failures", cfg.entryTtl(nutritionFailureTtl))
                 .build();
+        redis.initializeCaches();
+        return new TwoLevelCacheManager(redis, publisher, l1MaxSize, l1Ttl, lockTtl, lockWait);
+    }
+
+    /**
+     * Selects how cached values are stored in Redis.
+     * <ul>
+     *   <li>{@code compact} (default): {@link CompactRecipeSerializer}, binary recipes,
+     *       deflated above {@code mealplanner.cache.compress-threshold} bytes; still reads JSON entries.</li>
+     *   <li>{@code json}: Jackson JSON with embedded class names.</li>
+     * </ul>
+     *
+     * @param format            {@code compact} or {@code json}.
+     * @param compressThreshold Body size in bytes above which compact entries are deflated.
+     * @return The value serializer of the Redis caches.
+     */
+    @Bean
+    public RedisSerializer<Object> cacheValueSerializer(
+            @Value("${mealplanner.cache.serializer:compact}") String format,
+            @Value("${mealplanner.cache.compress-threshold:512}") int compressThreshold) {
+        return switch (format) {
+            case "json" -> new GenericJackson2JsonRedisSerializer();
+            case "compact" -> new CompactRecipeSerializer(compressThreshold);
+            default -> throw new IllegalStateException("Unknown mealplanner.cache.serializer: " + format);
+        };
+    }
+
+    /**
+     * Subscribes the cache manager to L1 invalidations published by other nodes.
+     * Not started in tests, which run without Redis.
+     *
+     * @param cf           The Redis connection factory.
+     * @param cacheManager The two-level cache manager to notify.
+     * @return The listener container.
+     */
+    @Bean
+    @Profile("!test")
+    public RedisMessageListenerContainer cacheInvalidationListener(RedisConnectionFactory cf,
+                                                                   TwoLevelCacheManager cacheManager) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(cf);
+        container.addMessageListener(cacheManager,
+                new ChannelTopic(TwoLevelCacheManager.INVALIDATION_CHANNEL));
+        return container;
     }
 
     /** Optional: shorter key names (fewer Redis bytes). */
@@ -0,0 +1,285 @@
+package com.deyan.mealplanner.config;
+
+import com.deyan.mealplanner.dto.CacheStatsDTO;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.cache.RedisCache;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link Cache} that keeps a bounded in-heap copy (L1, Caffeine) in front of a shared
+ * Redis cache (L2).
+ * <p>
+ * Reads try L1 first and fill it from L2 on a miss. Writes and evictions go to both levels
+ * and are broadcast through {@link TwoLevelCacheManager} so other nodes drop their L1 copy.
+ * L1 keys are the string form of the cache key, the same form Redis uses, so remote
+ * invalidations can address them directly.
+ * <p>
+ * Misses through {@link #get(Object, Callable)} are single-flight: concurrent callers on this
+ * node share one load, and across nodes a short Redis lock lets one node load while the
+ * others wait for the value to appear in L2.
+ */
+public class TwoLevelCache extends AbstractValueAdaptingCache {
+
+    private final String name;
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> l1;
+    private final Cache l2;
+    private final TwoLevelCacheManager manager;
+
+    private final LongAdder l2Hits = new LongAdder();
+    private final LongAdder l2Misses = new LongAdder();
+    private final LongAdder l1Invalidations = new LongAdder();
+    private final LongAdder l2Invalidations = new LongAdder();
+    private final LongAdder l2LoadNanos = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    TwoLevelCache(String name,
+                  com.github.benmanes.caffeine.cache.Cache<String, Object> l1,
+                  Cache l2,
+                  TwoLevelCacheManager manager) {
+        super(true);
+        this.name = name;
+        this.l1 = l1;
+        this.l2 = l2;
+        this.manager = manager;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return l2.getNativeCache();
+    }
+
+    /**
+     * Looks the key up in L1, then in L2. An L2 hit is copied into L1.
+     *
+     * @return The stored value (possibly the null marker), or {@code null} on a miss.
+     */
+    @Override
+    protected Object lookup(Object key) {
+        String k = String.valueOf(key);
+        Object local = l1.getIfPresent(k);
+        if (local != null) {
+            return local;
+        }
+
+        long start = System.nanoTime();
+        ValueWrapper remote = l2.get(key);
+        l2LoadNanos.add(System.nanoTime() - start);
+        if (remote == null) {
+            l2Misses.increment();
+            return null;
+        }
+        l2Hits.increment();
+        Object stored = toStoreValue(remote.get());
+        l1.put(k, stored);
+        return stored;
+    }
+
+    /**
+     * Returns the cached value or computes it with the loader and stores it in both levels.
+     * Only one load per key runs at a time on this node; other callers wait for its result.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Object stored = lookup(key);
+        if (stored != null) {
+            return (T) fromStoreValue(stored);
+        }
+
+        String k = String.valueOf(key);
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> leader = inFlight.putIfAbsent(k, mine);
+        if (leader != null) {
+            coalesced.increment();
+            return (T) fromStoreValue(await(leader));
+        }
+        try {
+            // a previous leader may have finished between our lookup and putIfAbsent
+            Object value = l1.getIfPresent(k);
+            if (value == null) {
+                value = loadAcrossNodes(key, valueLoader);
+            }
+            mine.complete(value);
+            return (T) fromStoreValue(value);
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(k, mine);
+        }
+    }
+
+    /**
+     * Loads a value while holding the cross-node lock for the key. If another node holds it,
+     * waits for that node's value to show up in L2, and loads anyway once the wait times out.
+     *
+     * @return The stored value.
+     */
+    private Object loadAcrossNodes(Object key, Callable<?> valueLoader) {
+        String k = String.valueOf(key);
+        String token = manager.tryLock(name, k);
+        if (token == null) {
+            ValueWrapper remote = manager.awaitRemoteLoad(() -> l2.get(key));
+            if (remote != null) {
+                coalesced.increment();
+                Object stored = toStoreValue(remote.get());
+                l1.put(k, stored);
+                return stored;
+            }
+        }
+        try {
+            Object value;
+            long start = System.nanoTime();
+            try {
+                value = valueLoader.call();
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            } finally {
+                loads.increment();
+                loadNanos.add(System.nanoTime() - start);
+            }
+            put(key, value);
+            return toStoreValue(value);
+        } finally {
+            manager.unlock(name, k, token);
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> leader) {
+        try {
+            return leader.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Looks several keys up at once: L1 first, then one multi-get against L2 for the rest.
+     * Found L2 values are copied into L1. Missing keys (and cached nulls) are absent from the result.
+     *
+     * @param keys The cache keys.
+     * @return The values found, keyed by the given key objects.
+     */
+    public Map<Object, Object> getAll(Collection<?> keys) {
+        Map<Object, Object> found = new HashMap<>();
+        List<Object> remaining = new ArrayList<>();
+        for (Object key : keys) {
+            Object local = l1.getIfPresent(String.valueOf(key));
+            if (local != null) {
+                found.put(key, local);
+            } else {
+                remaining.add(key);
+            }
+        }
+
+        if (!remaining.isEmpty()) {
+            long start = System.nanoTime();
+            List<Object> remote = l2 instanceof RedisCache redisCache
+                    ? manager.multiGet(redisCache, remaining.stream().map(String::valueOf).toList())
+                    : remaining.stream().map(k -> {
+                        ValueWrapper w = l2.get(k);
+                        return w != null ? w.get() : null;
+                    }).toList();
+            l2LoadNanos.add(System.nanoTime() - start);
+
+            for (int i = 0; i < remaining.size(); i++) {
+                Object value = remote.get(i);
+                if (value == null || value instanceof NullValue) {
+                    l2Misses.increment();
+                    continue;
+                }
+                l2Hits.increment();
+                l1.put(String.valueOf(remaining.get(i)), value);
+                found.put(remaining.get(i), value);
+            }
+        }
+
+        found.replaceAll((k, v) -> fromStoreValue(v));
+        found.values().removeIf(Objects::isNull);
+        return found;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        l2.put(key, value);
+        l1.put(String.valueOf(key), toStoreValue(value));
+        manager.publishInvalidation(name, String.valueOf(key));
+    }
+
+    @Override
+    public void evict(Object key) {
+        l2.evict(key);
+        l2Invalidations.increment();
+        l1.invalidate(String.valueOf(key));
+        l1Invalidations.increment();
+        manager.publishInvalidation(name, String.valueOf(key));
+    }
+
+    @Override
+    public void clear() {
+        l2.clear();
+        l2Invalidations.increment();
+        l1.invalidateAll();
+        l1Invalidations.increment();
+        manager.publishInvalidation(name, null);
+    }
+
+    /**
+     * Drops the L1 copy of a key after another node changed it.
+     *
+     * @param key The string form of the key, or {@code null} to drop every entry.
+     */
+    void invalidateLocal(String key) {
+        if (key == null) {
+            l1.invalidateAll();
+        } else {
+            l1.invalidate(key);
+        }
+        l1Invalidations.increment();
+    }
+
+    /**
+     * Snapshots the per-level statistics.
+     * <p>
+     * L1 load time is the time spent fetching from L2 on an L1 miss; L2 load time is the
+     * time spent in the value loader (the origin, e.g. Spoonacular) on an L2 miss.
+     * L2 evictions are left null: TTL expiry and maxmemory evictions happen inside Redis
+     * and are not visible here, so only the explicit invalidations are counted.
+     */
+    CacheStatsDTO stats() {
+        CacheStats s = l1.stats();
+        long l2Lookups = l2Hits.sum() + l2Misses.sum();
+        CacheStatsDTO.Level local = new CacheStatsDTO.Level(
+                s.hitCount(), s.missCount(), s.hitRate(), s.evictionCount(), l1Invalidations.sum(),
+                averageMillis(l2LoadNanos.sum(), l2Lookups), l1.estimatedSize());
+        CacheStatsDTO.Level remote = new CacheStatsDTO.Level(
+                l2Hits.sum(), l2Misses.sum(), l2Lookups == 0 ? 1.0 : (double) l2Hits.sum() / l2Lookups,
+                null, l2Invalidations.sum(), averageMillis(loadNanos.sum(), loads.sum()), null);
+        return new CacheStatsDTO(name, local, remote, coalesced.sum());
+    }
+
+    private static double averageMillis(long nanos, long count) {
+        return count == 0 ? 0.0 : nanos / 1_000_000.0 / count;
+    }
+}
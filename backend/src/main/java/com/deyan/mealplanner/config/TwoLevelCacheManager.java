@@ -0,0 +1,219 @@
+package com.deyan.mealplanner.config;
+
+import com.deyan.mealplanner.dto.CacheStatsDTO;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.util.ByteUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * {@link CacheManager} that puts an in-heap Caffeine cache (L1) in front of every cache of a
+ * delegate Redis cache manager (L2).
+ * <p>
+ * Each node has its own L1, so a change on one node is published on a Redis channel;
+ * the other nodes receive it through {@link #onMessage} and drop their L1 copy.
+ * Messages have the form {@code nodeId|cacheName|key}, with an empty key meaning "clear".
+ * A failed publish is only logged: the L1 TTL bounds how long another node can serve a stale entry.
+ * <p>
+ * The same Redis connection backs the short per-key load locks ({@code SET NX PX}, released with
+ * a compare-and-delete script) that keep concurrent misses on different nodes from all hitting the origin.
+ */
+@Slf4j
+public class TwoLevelCacheManager implements CacheManager, MessageListener {
+
+    public static final String INVALIDATION_CHANNEL = "mealplanner:cache-invalidation";
+
+    /** Token returned by {@link #tryLock} when Redis is unreachable; the caller loads unlocked. */
+    static final String NO_LOCK = "";
+
+    private static final RedisScript<Long> UNLOCK = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+    private static final long POLL_MILLIS = 50;
+
+    private final CacheManager redis;
+    private final StringRedisTemplate publisher;
+    private final long l1MaxSize;
+    private final Duration l1Ttl;
+    private final Duration lockTtl;
+    private final Duration lockWait;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+
+    /**
+     * @param redis     The L2 cache manager.
+     * @param publisher Template used to broadcast invalidations.
+     * @param l1MaxSize Maximum number of entries per L1 cache.
+     * @param l1Ttl     Time after write at which an L1 entry expires.
+     * @param lockTtl   Expiry of a cross-node load lock, bounds how long a crashed loader blocks others.
+     * @param lockWait  How long a node waits for another node's load before loading itself.
+     */
+    public TwoLevelCacheManager(CacheManager redis, StringRedisTemplate publisher, long l1MaxSize, Duration l1Ttl,
+                                Duration lockTtl, Duration lockWait) {
+        this.redis = redis;
+        this.publisher = publisher;
+        this.l1MaxSize = l1MaxSize;
+        this.l1Ttl = l1Ttl;
+        this.lockTtl = lockTtl;
+        this.lockWait = lockWait;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, n -> {
+            Cache l2 = redis.getCache(n);
+            if (l2 == null) {
+                return null;
+            }
+            return new TwoLevelCache(n, Caffeine.newBuilder()
+                    .maximumSize(l1MaxSize)
+                    .expireAfterWrite(l1Ttl)
+                    .recordStats()
+                    .build(), l2, this);
+        });
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return redis.getCacheNames();
+    }
+
+    /**
+     * @return Per-level statistics of every cache that has been used on this node.
+     */
+    public List<CacheStatsDTO> stats() {
+        return caches.values().stream().map(TwoLevelCache::stats).toList();
+    }
+
+    /**
+     * Broadcasts that a key (or, for {@code null}, the whole cache) changed.
+     */
+    void publishInvalidation(String cacheName, String key) {
+        try {
+            publisher.convertAndSend(INVALIDATION_CHANNEL,
+                    nodeId + "|" + cacheName + "|" + (key == null ? "" : key));
+        } catch (RuntimeException e) {
+            log.warn("Could not publish cache invalidation for {}::{}: {}", cacheName, key, e.getMessage());
+        }
+    }
+
+    /**
+     * Tries to take the cross-node load lock of a key.
+     *
+     * @return A token to pass to {@link #unlock}, {@code null} if another node holds the lock,
+     *         or {@link #NO_LOCK} if Redis could not be reached.
+     */
+    String tryLock(String cacheName, String key) {
+        String token = nodeId + ":" + UUID.randomUUID();
+        try {
+            Boolean acquired = publisher.opsForValue().setIfAbsent(lockKey(cacheName, key), token, lockTtl);
+            return Boolean.TRUE.equals(acquired) ? token : null;
+        } catch (RuntimeException e) {
+            log.warn("Could not take load lock for {}::{}: {}", cacheName, key, e.getMessage());
+            return NO_LOCK;
+        }
+    }
+
+    /**
+     * Releases a load lock if it is still ours (it may have expired and been taken by another node).
+     */
+    void unlock(String cacheName, String key, String token) {
+        if (token == null || token.equals(NO_LOCK)) {
+            return;
+        }
+        try {
+            publisher.execute(UNLOCK, List.of(lockKey(cacheName, key)), token);
+        } catch (RuntimeException e) {
+            log.warn("Could not release load lock for {}::{}: {}", cacheName, key, e.getMessage());
+        }
+    }
+
+    /**
+     * Polls L2 while another node loads a key.
+     *
+     * @param remote Reads the key from L2.
+     * @return The value once it appears, or {@code null} when the wait times out.
+     */
+    Cache.ValueWrapper awaitRemoteLoad(Supplier<Cache.ValueWrapper> remote) {
+        long deadline = System.nanoTime() + lockWait.toNanos();
+        while (System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            Cache.ValueWrapper value = remote.get();
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads several keys of a Redis cache with a single {@code MGET}, using the cache's own key
+     * prefix and value serializer. Redis errors are logged and reported as misses.
+     *
+     * @return One value per key, {@code null} where the key is missing.
+     */
+    List<Object> multiGet(RedisCache cache, List<String> keys) {
+        RedisCacheConfiguration cfg = cache.getCacheConfiguration();
+        String prefix = cfg.getKeyPrefixFor(cache.getName());
+        byte[][] rawKeys = keys.stream()
+                .map(k -> ByteUtils.getBytes(cfg.getKeySerializationPair().write(prefix + k)))
+                .toArray(byte[][]::new);
+        List<Object> values = new ArrayList<>(keys.size());
+        try {
+            List<byte[]> raw = publisher.execute((RedisCallback<List<byte[]>>) c -> c.stringCommands().mGet(rawKeys));
+            for (int i = 0; i < keys.size(); i++) {
+                byte[] bytes = raw != null ? raw.get(i) : null;
+                values.add(bytes != null ? cfg.getValueSerializationPair().read(ByteBuffer.wrap(bytes)) : null);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Multi-get on {} failed: {}", cache.getName(), e.getMessage());
+            values.clear();
+            keys.forEach(k -> values.add(null));
+        }
+        return values;
+    }
+
+    private static String lockKey(String cacheName, String key) {
+        return "lock:" + cacheName + "::" + key;
+    }
+
+    /**
+     * Drops L1 entries changed by another node. Our own messages are ignored.
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|", 3);
+        if (parts.length != 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+        TwoLevelCache cache = caches.get(parts[1]);
+        if (cache != null) {
+            cache.invalidateLocal(parts[2].isEmpty() ? null : parts[2]);
+        }
+    }
+}
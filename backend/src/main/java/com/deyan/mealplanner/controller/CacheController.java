@@ -0,0 +1,29 @@
+package com.deyan.mealplanner.controller;
+
+import com.deyan.mealplanner.config.TwoLevelCacheManager;
+import com.deyan.mealplanner.dto.CacheStatsDTO;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/cache")
+public class CacheController {
+    private final TwoLevelCacheManager cacheManager;
+
+    public CacheController(TwoLevelCacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    /**
+     * Returns hit ratio, eviction count and load time of each cache level on this node.
+     *
+     * @return A list of {@link CacheStatsDTO}, one per cache in use.
+     */
+    @GetMapping("/stats")
+    public List<CacheStatsDTO> getStats() {
+        return cacheManager.stats();
+    }
+}
@@ -49,6 +49,14 @@ public class GlobalExceptionHandler {
     public ResponseEntity<ErrorResponse> tooMany(ExternalApiQuotaException ex) {
         return build(HttpStatus.TOO_MANY_REQUESTS, ex);
     }
+    @ExceptionHandler(ExternalApiUnavailableException.class)
+    public ResponseEntity<ErrorResponse> badGateway(ExternalApiUnavailableException ex) {
+        return build(HttpStatus.BAD_GATEWAY, ex);
+    }
+    @ExceptionHandler(JobQueueFullException.class)
+    public ResponseEntity<ErrorResponse> queueFull(JobQueueFullException ex) {
+        return build(HttpStatus.TOO_MANY_REQUESTS, ex);
+    }
     @ExceptionHandler(NotFoundException.class)
     public ResponseEntity<ErrorResponse> notFound(NotFoundException ex) {
         return build(HttpStatus.NOT_FOUND, ex);
@@ -1,11 +1,17 @@
 package com.deyan.mealplanner.controller;
 
 import com.deyan.mealplanner.dto.MealPlanDetailsDTO;
+import com.deyan.mealplanner.dto.MealPlanJobDTO;
+import com.deyan.mealplanner.dto.MealPlanPageDTO;
 import com.deyan.mealplanner.dto.MealPlanSummaryDTO;
+import com.deyan.mealplanner.dto.ResourceVersion;
+import com.deyan.mealplanner.service.MealPlanJobService;
 import com.deyan.mealplanner.service.MealPlanService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -14,10 +20,16 @@ import java.util.List;
 @RequestMapping("/api/users/{userId}/meal-plans")
 public class MealPlanController {
 
+    // plans can still change (slot swaps, recipe updates): browsers may store them but must revalidate
+    private static final CacheControl PLAN_CACHE = CacheControl.noCache().cachePrivate();
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final MealPlanService mealPlanService;
+    private final MealPlanJobService jobService;
 
-    public MealPlanController(MealPlanService mealPlanService) {
+    public MealPlanController(MealPlanService mealPlanService, MealPlanJobService jobService) {
         this.mealPlanService = mealPlanService;
+        this.jobService = jobService;
     }
 
     /**
@@ -37,6 +49,44 @@ public class MealPlanController {
         return new CreatedDTO(id);
     }
 
+    /**
+     * Queues the creation of a new meal plan and returns immediately.
+     * If the user already has a pending job, that job is returned instead.
+     *
+     * @param userId The ID of the user.
+     * @param r The meal plan request containing macros and duration.
+     * @return 202 Accepted with the job status; 429 if the job queue is full.
+     */
+    @PostMapping("/jobs")
+    public ResponseEntity<MealPlanJobDTO> createMealPlanAsync(@PathVariable Long userId, @RequestBody CreateReq r) {
+        MealPlanJobDTO job = jobService.submit(
+                userId,
+                r.targetKcal(), r.proteinG(), r.carbG(), r.fatG(),
+                r.days()
+        );
+        return ResponseEntity.accepted().body(job);
+    }
+
+    /**
+     * Polls the status of a meal plan generation job.
+     *
+     * @param userId The ID of the user.
+     * @param jobId The ID of the job.
+     * @return 200 with the created plan's ID once done, 200 with status {@code FAILED} and the
+     *         error if generation failed, otherwise 202 with the job status.
+     */
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<?> getMealPlanJob(@PathVariable Long userId, @PathVariable String jobId) {
+        MealPlanJobDTO job = jobService.getJob(userId, jobId);
+        if (job.planId() != null) {
+            return ResponseEntity.ok(new CreatedDTO(job.planId()));
+        }
+        if (MealPlanJobService.Status.FAILED.name().equals(job.status())) {
+            return ResponseEntity.ok(job);
+        }
+        return ResponseEntity.accepted().body(job);
+    }
+
     /**
      * Regenerates the meals for an existing meal plan.
      *
@@ -49,39 +99,84 @@ public class MealPlanController {
         return mealPlanService.regenerate(userId, planId);
     }
 
+    /**
+     * Replaces the recipe of a single meal slot instead of regenerating the whole plan.
+     * Only the affected shopping-list rows and the plan's actual macros are recomputed.
+     *
+     * @param userId The ID of the user.
+     * @param planId The ID of the meal plan.
+     * @param dayIndex The zero-based day of the slot.
+     * @param mealSlot The slot to replace: breakfast, lunch or dinner.
+     * @param r Optional body with the replacement recipe; without it the closest catalog recipe is used.
+     * @return A DTO containing the updated meal plan details.
+     */
+    @PutMapping("/{planId}/slots/{dayIndex}/{mealSlot}")
+    public MealPlanDetailsDTO swapMealSlot(@PathVariable Long userId, @PathVariable Long planId,
+                                           @PathVariable int dayIndex, @PathVariable String mealSlot,
+                                           @RequestBody(required = false) SwapReq r) {
+        return mealPlanService.swapSlot(userId, planId, dayIndex, mealSlot, r != null ? r.recipeId() : null);
+    }
+
     /**
      * Retrieves a specific meal plan by its ID.
+     * Supports conditional requests: if the client's ETag / Last-Modified still matches,
+     * 304 Not Modified is returned before the plan is loaded.
      *
      * @param userId The ID of the user.
      * @param planId The ID of the meal plan.
-     * @return A DTO containing the meal plan's details.
+     * @param request The current request, used for the conditional check.
+     * @return A DTO containing the meal plan's details, or 304.
      */
     @GetMapping("/{planId}")
-    public MealPlanDetailsDTO getMealPlanById(@PathVariable Long userId, @PathVariable Long planId) {
-        return mealPlanService.getPlanById(userId, planId);
+    public ResponseEntity<MealPlanDetailsDTO> getMealPlanById(@PathVariable Long userId, @PathVariable Long planId,
+                                                              WebRequest request) {
+        ResourceVersion version = mealPlanService.getPlanVersion(userId, planId);
+        if (request.checkNotModified(version.etag(), version.lastModified())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .cacheControl(PLAN_CACHE)
+                .body(mealPlanService.getPlanById(userId, planId));
     }
 
     /**
      * Retrieves the most recently created meal plan for a user.
+     * Supports conditional requests like {@link #getMealPlanById}.
      *
      * @param userId The ID of the user.
-     * @return The latest meal plan details.
+     * @param request The current request, used for the conditional check.
+     * @return The latest meal plan details, or 304.
      */
     @GetMapping("/latest")
-    public ResponseEntity<MealPlanDetailsDTO> getLatestMealPlan(@PathVariable Long userId) {
-        MealPlanDetailsDTO plan = mealPlanService.getLatestPlanForUser(userId);
-        return ResponseEntity.ok(plan);
+    public ResponseEntity<MealPlanDetailsDTO> getLatestMealPlan(@PathVariable Long userId, WebRequest request) {
+        ResourceVersion version = mealPlanService.getLatestPlanVersion(userId);
+        if (request.checkNotModified(version.etag(), version.lastModified())) {
+            return null;
+        }
+        MealPlanDetailsDTO plan = mealPlanService.getPlanById(userId, version.id());
+        return ResponseEntity.ok().cacheControl(PLAN_CACHE).body(plan);
     }
 
     /**
-     * Retrieves a summary list of all meal plans for the given user.
+     * Retrieves one page of meal plan summaries for the given user, newest first.
+     * The continuation token for the next page is returned in the {@code X-Next-Cursor} header,
+     * which is absent on the last page.
      *
      * @param userId The ID of the user.
+     * @param cursor The {@code X-Next-Cursor} value from the previous page (optional).
+     * @param limit Maximum number of plans per page (1-100, default 20).
      * @return A list of meal plan summaries.
      */
     @GetMapping
-    public List<MealPlanSummaryDTO> getUserMealPlans(@PathVariable Long userId) {
-        return mealPlanService.getUserPlans(userId);
+    public ResponseEntity<List<MealPlanSummaryDTO>> getUserMealPlans(@PathVariable Long userId,
+                                                                     @RequestParam(required = false) String cursor,
+                                                                     @RequestParam(defaultValue = "20") int limit) {
+        MealPlanPageDTO page = mealPlanService.getUserPlans(userId, cursor, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(page.items());
     }
 
     /**
@@ -110,6 +205,13 @@ public class MealPlanController {
                             Integer carbG,
                             Integer fatG) { }
 
+    /**
+     * Request body for swapping a meal slot.
+     *
+     * @param recipeId The replacement recipe ID (nullable).
+     */
+    public record SwapReq(Long recipeId) { }
+
     /**
      * Response wrapper containing the ID of a newly created meal plan.
      *
@@ -1,15 +1,27 @@
 package com.deyan.mealplanner.controller;
 
+import com.deyan.mealplanner.dto.PantryMatchDTO;
 import com.deyan.mealplanner.dto.RecipeDetailsDTO;
+import com.deyan.mealplanner.dto.ResourceVersion;
+import com.deyan.mealplanner.exceptions.BadRequestException;
 import com.deyan.mealplanner.service.RecipeService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.Duration;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/recipes")
 public class RecipeController {
+    static final int MAX_PANTRY_INGREDIENTS = 500;
     private final RecipeService recipeService;
 
     public RecipeController(RecipeService recipeService) {
@@ -18,12 +30,53 @@ public class RecipeController {
 
     /**
      * Retrieves detailed information about a recipe by its ID.
+     * Supports conditional requests: if the client's ETag / Last-Modified still matches,
+     * 304 Not Modified is returned without loading the recipe.
      *
      * @param id The ID of the recipe.
-     * @return A {@link RecipeDetailsDTO} containing full recipe data.
+     * @param request The current request, used for the conditional check.
+     * @return A {@link RecipeDetailsDTO} containing full recipe data, or 304.
      */
     @GetMapping("/{id}")
-    public RecipeDetailsDTO getRecipeById(@PathVariable Long id) {
-        return recipeService.getRecipeDetailsById(id);
+    public ResponseEntity<RecipeDetailsDTO> getRecipeById(@PathVariable Long id, WebRequest request) {
+        ResourceVersion version = recipeService.getRecipeVersion(id);
+        if (request.checkNotModified(version.etag(), version.lastModified())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(Duration.ofDays(1)).cachePrivate())
+                .body(recipeService.getRecipeDetailsById(id));
+    }
+
+    /**
+     * Ranks catalog recipes by the share of their ingredients found in the user's pantry.
+     *
+     * @param r The pantry ingredient IDs and optional ranking limits.
+     * @return The best matching recipes, best first.
+     * @throws BadRequestException If the pantry is empty or too large, or the coverage is not a share.
+     */
+    @PostMapping("/pantry-matches")
+    public List<PantryMatchDTO> getPantryMatches(@RequestBody PantryReq r) {
+        if (r.ingredientIds() == null || r.ingredientIds().isEmpty()) {
+            throw new BadRequestException("ingredientIds must not be empty");
+        }
+        if (r.ingredientIds().size() > MAX_PANTRY_INGREDIENTS) {
+            throw new BadRequestException("ingredientIds must not contain more than " + MAX_PANTRY_INGREDIENTS + " IDs");
+        }
+        if (r.minCoverage() != null && !(r.minCoverage() >= 0 && r.minCoverage() <= 1)) {
+            throw new BadRequestException("minCoverage must be between 0 and 1");
+        }
+        int limit = r.limit() != null ? Math.max(1, Math.min(r.limit(), 100)) : 20;
+        double minCoverage = r.minCoverage() != null ? r.minCoverage() : 0.5;
+        return recipeService.findPantryMatches(r.ingredientIds(), minCoverage, limit);
     }
+
+    /**
+     * Request body for pantry matching.
+     *
+     * @param ingredientIds The ingredients the user has (at most 500).
+     * @param limit Maximum number of recipes (default 20, at most 100).
+     * @param minCoverage Minimum share (0..1) of a recipe's ingredients in the pantry (default 0.5).
+     */
+    public record PantryReq(List<Long> ingredientIds, Integer limit, Double minCoverage) { }
 }
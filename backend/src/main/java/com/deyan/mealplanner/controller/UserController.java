@@ -2,9 +2,11 @@ package com.deyan.mealplanner.controller;
 
 import com.deyan.mealplanner.dto.*;
 import com.deyan.mealplanner.service.UserService;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.List;
 
 /**
@@ -26,13 +28,22 @@ public class UserController {
     }
 
     /**
-     * Retrieves a list of all users.
+     * Retrieves one page of users, in ID order.
+     * The cursor for the next page, if any, is returned in the {@code X-Next-Cursor} header.
      *
+     * @param cursor Cursor from the previous page; omit for the first page.
+     * @param limit  Page size (at most 100).
      * @return A list of {@link UserDTO} objects.
      */
     @GetMapping
-    public List<UserDTO> getAllUsers() {
-        return userService.getAllUsers();
+    public ResponseEntity<List<UserDTO>> getAllUsers(@RequestParam(required = false) String cursor,
+                                                     @RequestParam(defaultValue = "20") int limit) {
+        UserPageDTO page = userService.getAllUsers(cursor, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(MealPlanController.NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(page.items());
     }
 
     /**
@@ -93,6 +104,25 @@ public class UserController {
         return userService.getRecentWeights(id);
     }
 
+    /**
+     * Retrieves the user's weight history over an arbitrary range, downsampled for charting.
+     *
+     * @param id     The ID of the user.
+     * @param from   First day of the range (ISO date); defaults to one year before {@code to}.
+     * @param to     Last day of the range (ISO date); defaults to today.
+     * @param points Maximum number of points to return (3-1000, default 200).
+     * @return A list of {@link WeightSeriesPointDTO} entries, each with its 7-day rolling average.
+     */
+    @GetMapping("/{id}/weight/series")
+    public List<WeightSeriesPointDTO> getWeightSeries(@PathVariable Long id,
+                                                      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                      @RequestParam(defaultValue = "200") int points) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusYears(1);
+        return userService.getWeightSeries(id, start, end, points);
+    }
+
     /**
      * Retrieves the list of achievements unlocked by the user.
      *
@@ -103,4 +133,17 @@ public class UserController {
     public List<AchievementDTO> getAchievements(@PathVariable Long id) {
         return userService.getUserAchievements(id);
     }
+
+    /**
+     * Claims the achievements unlocked since the last claim. Unlocks are evaluated in the
+     * background after a weight log, so clients call this to announce them; each unlock is
+     * handed out once, which is why this is a POST.
+     *
+     * @param id The ID of the user.
+     * @return The IDs of the newly unlocked achievements.
+     */
+    @PostMapping("/{id}/achievements/claim")
+    public List<Long> claimUnlocks(@PathVariable Long id) {
+        return userService.claimNewUnlocks(id);
+    }
 }
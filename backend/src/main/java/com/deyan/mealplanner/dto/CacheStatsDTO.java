@@ -0,0 +1,17 @@
+package com.deyan.mealplanner.dto;
+
+//Per-level statistics of a two-level cache (L1 = in-heap, L2 = Redis);
+//coalescedLoads counts misses that reused another caller's load.
+//evictions are size/expiry evictions (null for L2: Redis evicts on its own and does not tell us);
+//invalidations are explicit evict/clear calls, including those broadcast by other nodes for L1
+public record CacheStatsDTO(String cache, Level l1, Level l2, long coalescedLoads) {
+
+    public record Level(long hits,
+                        long misses,
+                        double hitRatio,
+                        Long evictions,
+                        long invalidations,
+                        double averageLoadMillis,
+                        Long size) {
+    }
+}
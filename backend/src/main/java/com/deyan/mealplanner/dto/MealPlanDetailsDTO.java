@@ -13,5 +13,7 @@ public record MealPlanDetailsDTO(Long id,
     public record RecipeDTO(Long id, String title, Integer prepTime, Integer servings,String sourceUrl,
                             List<RecipeDetailsDTO.ExtendedIngredient> ingredients) {}
 
-    public record ShoppingListItemDTO(Long ingredientId, String name, String quantityText) {}
+    // amount is in the canonical unit (g, ml, pc, ...); quantityText is the same, formatted for display
+    public record ShoppingListItemDTO(Long ingredientId, String name, BigDecimal amount, String unit,
+                                      String quantityText) {}
 }
@@ -0,0 +1,5 @@
+package com.deyan.mealplanner.dto;
+
+//Status of an asynchronous meal-plan generation job; error is only set when the job FAILED
+public record MealPlanJobDTO(String jobId, String status, Long planId, String error) {
+}
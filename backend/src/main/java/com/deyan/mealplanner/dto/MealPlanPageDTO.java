@@ -0,0 +1,7 @@
+package com.deyan.mealplanner.dto;
+
+import java.util.List;
+
+//One page of a user's plan history; nextCursor is null on the last page
+public record MealPlanPageDTO(List<MealPlanSummaryDTO> items, String nextCursor) {
+}
@@ -0,0 +1,6 @@
+package com.deyan.mealplanner.dto;
+
+//A catalog recipe ranked by how much of it can be cooked from the user's pantry
+public record PantryMatchDTO(Long recipeId, String title, int matchedIngredients, int totalIngredients,
+                             double coverage) {
+}
@@ -0,0 +1,13 @@
+package com.deyan.mealplanner.dto;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+//Version of a resource for HTTP conditional requests (strong ETag + Last-Modified)
+public record ResourceVersion(long id, String etag, long lastModified) {
+
+    public static ResourceVersion of(String kind, long id, LocalDateTime changedAt) {
+        long millis = changedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return new ResourceVersion(id, kind + "-" + id + "-" + millis, millis);
+    }
+}
@@ -0,0 +1,7 @@
+package com.deyan.mealplanner.dto;
+
+import java.util.List;
+
+//One page of users in ID order; nextCursor is null on the last page
+public record UserPageDTO(List<UserDTO> items, String nextCursor) {
+}
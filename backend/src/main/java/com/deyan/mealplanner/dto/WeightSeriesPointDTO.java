@@ -0,0 +1,8 @@
+package com.deyan.mealplanner.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+//One point of a downsampled weight series, with the average of the 7 days up to it
+public record WeightSeriesPointDTO(LocalDateTime date, BigDecimal weight, BigDecimal rollingAverage) {
+}
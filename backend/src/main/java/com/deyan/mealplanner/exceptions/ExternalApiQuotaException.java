@@ -2,8 +2,10 @@ package com.deyan.mealplanner.exceptions;
 
 public class ExternalApiQuotaException extends RuntimeException {
 
+    public static final String DEFAULT_MESSAGE = "Daily recipe quota reached, please try again tomorrow.";
+
     public ExternalApiQuotaException() {
-        super("Daily recipe quota reached, please try again tomorrow.");
+        super(DEFAULT_MESSAGE);
     }
 
     public ExternalApiQuotaException(String message) {
@@ -0,0 +1,14 @@
+package com.deyan.mealplanner.exceptions;
+
+public class ExternalApiUnavailableException extends RuntimeException {
+
+    public static final String DEFAULT_MESSAGE = "Recipes could not be fetched, please try again later.";
+
+    public ExternalApiUnavailableException() {
+        super(DEFAULT_MESSAGE);
+    }
+
+    public ExternalApiUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.deyan.mealplanner.exceptions;
+
+public class JobQueueFullException extends RuntimeException {
+    public JobQueueFullException(String message) {
+        super(message);
+    }
+}
@@ -1,10 +1,10 @@
 package com.deyan.mealplanner.service;
 
 import com.deyan.mealplanner.dto.AchievementDTO;
-import com.deyan.mealplanner.exceptions.NotFoundException;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.jooq.Condition;
 import org.jooq.DSLContext;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -12,20 +12,28 @@ import java.util.*;
 
 import static com.deyan.mealplanner.jooq.tables.Achievement.ACHIEVEMENT;
 import static com.deyan.mealplanner.jooq.tables.UserAchievement.USER_ACHIEVEMENT;
-import static com.deyan.mealplanner.jooq.tables.UserProgress.USER_PROGRESS;
-import static org.jooq.impl.DSL.coalesce;
+import static org.jooq.impl.DSL.*;
 
 /**
  * Service responsible for managing user achievements.
  * <p>
  * Handles progress updates and retrieval of unlocked or in-progress achievements.
+ * Progress is updated from outbox events by {@link OutboxDispatcher}, outside the request that
+ * caused it; unlocks are handed to the user on their next read via {@link #claimUnlocked}.
+ * Achievement definitions (metric and target) are held in an in-memory rule table that is
+ * loaded on first use and reloaded periodically, so adding an achievement is an insert into
+ * the {@code achievement} table.
  */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class AchievementService {
 
     private final DSLContext dsl;
+    private volatile List<Rule> rules;
+
+    public AchievementService(DSLContext dsl) {
+        this.dsl = dsl;
+    }
 
     /**
      * Retrieves all achievements for a user, including their current progress and completion status.
@@ -52,86 +60,123 @@ public class AchievementService {
     }
 
     /**
-     * Updates the progress for a user's streak/log-related achievements after a new weight log.
-     * Unlocks achievements when a target is reached and records the unlock time.
+     * Evaluates the rules for several users and stores the progress of all of them with one
+     * multi-row upsert. An achievement is unlocked when a metric's peak reaches its target; the
+     * unlock time is kept once set. Progress is only overwritten by a newer event than the one
+     * it was last written from, so events of one user processed out of order (e.g. by two
+     * dispatchers) cannot move it backwards.
+     * <p>
+     * Newly unlocked achievements are not reported from here: the upsert runs in the background,
+     * away from the request that should show them, so unlocks are tracked by
+     * {@code notified_at} and handed out by {@link #claimUnlocked}.
      *
-     * @param userId    The ID of the user.
-     * @param newStreak The current streak length.
-     * @return A list of achievement IDs that were newly unlocked during this update.
+     * @param metrics Per user, the metric values of their events.
      */
-    public List<Long> updateAfterWeightLog(long userId, int newStreak) {
-        int totalLogs = dsl.fetchCount(
-                USER_PROGRESS,
-                USER_PROGRESS.USER_ID.eq(userId)
-        );
-
-        Map<Long, Integer> map = Map.of(
-                1L, newStreak,   // 1-day streak
-                2L, newStreak,   // 7-day streak
-                3L, newStreak,   // 30-day streak
-                4L, totalLogs,   // 10 logs
-                5L, totalLogs,   // 20 logs
-                6L, totalLogs    // 30 logs
-        );
-
-        List<Long> unlocked = new ArrayList<>();
-        for (var e : map.entrySet()) {
-            boolean isUnlocked = saveProgress(userId, e.getKey(), e.getValue());
-            if (isUnlocked) {
-                unlocked.add(e.getKey());
+    public void evaluate(Map<Long, UserMetrics> metrics) {
+        List<Rule> table = rules();
+        var insert = dsl.insertInto(USER_ACHIEVEMENT,
+                USER_ACHIEVEMENT.USER_ID,
+                USER_ACHIEVEMENT.ACHIEVEMENT_ID,
+                USER_ACHIEVEMENT.PROGRESS,
+                USER_ACHIEVEMENT.COMPLETED_AT,
+                USER_ACHIEVEMENT.EVENT_ID);
+        int rows = 0;
+        for (var user : metrics.entrySet()) {
+            UserMetrics m = user.getValue();
+            for (Rule rule : table) {
+                Integer progress = m.latest().get(rule.metric());
+                if (progress == null) continue;
+                boolean reached = m.peak().getOrDefault(rule.metric(), progress) >= rule.target();
+                insert = insert.values(val(user.getKey()), val(rule.id()), val(progress),
+                        reached ? currentLocalDateTime() : castNull(LocalDateTime.class), val(m.eventId()));
+                rows++;
             }
         }
-        return unlocked;
+        if (rows == 0) {
+            return;
+        }
+
+        Condition newer = USER_ACHIEVEMENT.EVENT_ID.isNull()
+                .or(USER_ACHIEVEMENT.EVENT_ID.lt(excluded(USER_ACHIEVEMENT.EVENT_ID)));
+        insert.onConflict(USER_ACHIEVEMENT.USER_ID, USER_ACHIEVEMENT.ACHIEVEMENT_ID)
+                .doUpdate()
+                .set(USER_ACHIEVEMENT.PROGRESS, when(newer, excluded(USER_ACHIEVEMENT.PROGRESS)).otherwise(USER_ACHIEVEMENT.PROGRESS))
+                .set(USER_ACHIEVEMENT.EVENT_ID, when(newer, excluded(USER_ACHIEVEMENT.EVENT_ID)).otherwise(USER_ACHIEVEMENT.EVENT_ID))
+                .set(USER_ACHIEVEMENT.COMPLETED_AT, coalesce(USER_ACHIEVEMENT.COMPLETED_AT, excluded(USER_ACHIEVEMENT.COMPLETED_AT)))
+                .execute();
     }
 
     /**
-     * Updates or inserts a user's progress toward a specific achievement.
-     * If the progress meets or exceeds the target and was previously locked, the achievement is marked as completed.
+     * Returns the user's unlocks that have not been shown yet and marks them as shown, so each
+     * unlock is delivered once even though it happens in the background.
      *
-     * @param userId   The ID of the user.
-     * @param achId    The ID of the achievement.
-     * @param progress The user's current progress toward the achievement.
-     * @return True if the achievement was unlocked in this call; false otherwise.
-     * @throws NotFoundException if the achievement does not exist.
+     * @param userId The ID of the user.
+     * @return The IDs of the newly shown achievements.
      */
-    private boolean saveProgress(long userId, long achId, int progress) {
-        Integer target = dsl
-                .select(ACHIEVEMENT.TARGET)
+    public List<Long> claimUnlocked(long userId) {
+        return dsl.update(USER_ACHIEVEMENT)
+                .set(USER_ACHIEVEMENT.NOTIFIED_AT, currentLocalDateTime())
+                .where(USER_ACHIEVEMENT.USER_ID.eq(userId))
+                .and(USER_ACHIEVEMENT.COMPLETED_AT.isNotNull())
+                .and(USER_ACHIEVEMENT.NOTIFIED_AT.isNull())
+                .returningResult(USER_ACHIEVEMENT.ACHIEVEMENT_ID)
+                .fetch(USER_ACHIEVEMENT.ACHIEVEMENT_ID)
+                .stream()
+                .sorted()
+                .toList();
+    }
+
+    /**
+     * Reloads the rule table from the {@code achievement} table. Runs periodically so new or
+     * changed achievements take effect without a restart.
+     */
+    @Scheduled(fixedDelayString = "${mealplanner.achievements.reload-interval:PT5M}",
+            initialDelayString = "${mealplanner.achievements.reload-interval:PT5M}")
+    public void reloadRules() {
+        List<Rule> loaded = new ArrayList<>();
+        dsl.select(ACHIEVEMENT.ID, ACHIEVEMENT.METRIC, ACHIEVEMENT.TARGET)
                 .from(ACHIEVEMENT)
-                .where(ACHIEVEMENT.ID.eq(achId))
-                .fetchOneInto(Integer.class);
+                .forEach(r -> {
+                    try {
+                        loaded.add(new Rule(r.value1(), Metric.valueOf(r.value2()), r.value3()));
+                    } catch (IllegalArgumentException e) {
+                        log.warn("Achievement {} has unknown metric '{}', ignoring it", r.value1(), r.value2());
+                    }
+                });
+        rules = List.copyOf(loaded);
+        log.debug("Loaded {} achievement rules", loaded.size());
+    }
 
-        if (target == null) {
-            throw new NotFoundException("Achievement ID " + achId + " does not exist.");
+    private List<Rule> rules() {
+        if (rules == null) {
+            synchronized (this) {
+                if (rules == null) reloadRules();
+            }
         }
+        return rules;
+    }
 
-        var rec = dsl
-                .select(USER_ACHIEVEMENT.PROGRESS, USER_ACHIEVEMENT.COMPLETED_AT)
-                .from(USER_ACHIEVEMENT)
-                .where(USER_ACHIEVEMENT.USER_ID.eq(userId)
-                        .and(USER_ACHIEVEMENT.ACHIEVEMENT_ID.eq(achId)))
-                .fetchOne();
-
-        boolean wasLocked = rec == null || rec.get(USER_ACHIEVEMENT.COMPLETED_AT) == null;
-        boolean unlockNow = wasLocked && progress >= target;
+    /**
+     * What an achievement's target is compared against.
+     */
+    public enum Metric {
+        /** Consecutive days with a weight log. */
+        STREAK,
+        /** Total number of weight logs. */
+        TOTAL_LOGS
+    }
 
-        if (rec == null) {
-            dsl.insertInto(USER_ACHIEVEMENT)
-                    .set(USER_ACHIEVEMENT.USER_ID, userId)
-                    .set(USER_ACHIEVEMENT.ACHIEVEMENT_ID, achId)
-                    .set(USER_ACHIEVEMENT.PROGRESS, progress)
-                    .set(USER_ACHIEVEMENT.COMPLETED_AT, unlockNow ? LocalDateTime.now() : null)
-                    .execute();
-        } else {
-            dsl.update(USER_ACHIEVEMENT)
-                    .set(USER_ACHIEVEMENT.PROGRESS, progress)
-                    .set(USER_ACHIEVEMENT.COMPLETED_AT,
-                            unlockNow ? LocalDateTime.now() : rec.get(USER_ACHIEVEMENT.COMPLETED_AT))
-                    .where(USER_ACHIEVEMENT.USER_ID.eq(userId)
-                            .and(USER_ACHIEVEMENT.ACHIEVEMENT_ID.eq(achId)))
-                    .execute();
-        }
+    /**
+     * One achievement definition: unlocked when {@code metric} reaches {@code target}.
+     */
+    record Rule(long id, Metric metric, int target) { }
 
-        return unlockNow;
-    }
+    /**
+     * A user's metrics from a batch of events.
+     *
+     * @param eventId The newest event.
+     * @param latest  Each metric's value in the newest event carrying it.
+     * @param peak    Each metric's highest value in any of the events.
+     */
+    public record UserMetrics(long eventId, Map<Metric, Integer> latest, Map<Metric, Integer> peak) { }
 }
@@ -0,0 +1,206 @@
+package com.deyan.mealplanner.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jooq.DSLContext;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+import static com.deyan.mealplanner.jooq.tables.RecipeIngredient.RECIPE_INGREDIENT;
+
+/**
+ * In-memory inverted index from ingredient ID to the recipes using it, for "cook from what I
+ * have" queries.
+ * <p>
+ * Each ingredient's recipes are a compressed {@link RoaringBitmap}, so a pantry of ingredients
+ * is a handful of bitmap unions and membership tests. The index is loaded from
+ * {@code recipe_ingredient} after startup and then kept current by {@link #addAfterCommit},
+ * which plan persistence calls for the rows it writes.
+ * <p>
+ * Spoonacular recipe IDs fit in an {@code int}, which is what the bitmaps hold; a recipe with a
+ * larger ID is not indexed.
+ */
+@Slf4j
+@Component
+public class IngredientRecipeIndex {
+
+    private final DSLContext dsl;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // guarded by lock; replaced as a whole by rebuild
+    private Map<Long, RoaringBitmap> recipesByIngredient = new HashMap<>();
+    private Map<Integer, Integer> ingredientCounts = new HashMap<>();
+    // links added while a rebuild is loading, replayed onto the new maps; null when no rebuild runs
+    private List<Map<Long, ? extends Collection<Long>>> addedDuringRebuild;
+
+    public IngredientRecipeIndex(DSLContext dsl) {
+        this.dsl = dsl;
+    }
+
+    /**
+     * Loads the whole index from {@code recipe_ingredient}.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        rebuild(() -> dsl.select(RECIPE_INGREDIENT.RECIPE_ID, RECIPE_INGREDIENT.INGREDIENT_ID)
+                .from(RECIPE_INGREDIENT)
+                .fetchGroups(RECIPE_INGREDIENT.RECIPE_ID, RECIPE_INGREDIENT.INGREDIENT_ID));
+    }
+
+    /**
+     * Replaces the index with the loaded links. The new maps are built without the lock and
+     * swapped in under it, so queries keep using the old index meanwhile; links added while
+     * loading are applied to the new maps too, since the load may not have seen them.
+     *
+     * @param load Reads all ingredient IDs per recipe ID.
+     */
+    synchronized void rebuild(Supplier<? extends Map<Long, ? extends Collection<Long>>> load) {
+        lock.writeLock().lock();
+        try {
+            addedDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Map<Long, ? extends Collection<Long>> links;
+        try {
+            links = load.get();
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                addedDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        Map<Long, RoaringBitmap> byIngredient = new HashMap<>();
+        Map<Integer, Integer> counts = new HashMap<>();
+        links.forEach((recipeId, ingredientIds) -> add(byIngredient, counts, recipeId, ingredientIds));
+        byIngredient.values().forEach(RoaringBitmap::runOptimize);
+
+        lock.writeLock().lock();
+        try {
+            addedDuringRebuild.forEach(added -> added.forEach((recipeId, ingredientIds) ->
+                    add(byIngredient, counts, recipeId, ingredientIds)));
+            addedDuringRebuild = null;
+            recipesByIngredient = byIngredient;
+            ingredientCounts = counts;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.debug("Ingredient index rebuilt: {} recipes, {} ingredients", links.size(), byIngredient.size());
+    }
+
+    /**
+     * Adds recipe-ingredient links once the current transaction commits, or right away when
+     * there is none. Adding a link that is already indexed has no effect.
+     *
+     * @param links Ingredient IDs per recipe ID.
+     */
+    public void addAfterCommit(Map<Long, ? extends Collection<Long>> links) {
+        if (links.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            add(links);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                add(links);
+            }
+        });
+    }
+
+    void add(Map<Long, ? extends Collection<Long>> links) {
+        lock.writeLock().lock();
+        try {
+            links.forEach((recipeId, ingredientIds) -> add(recipesByIngredient, ingredientCounts, recipeId, ingredientIds));
+            if (addedDuringRebuild != null) {
+                addedDuringRebuild.add(links);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void add(Map<Long, RoaringBitmap> recipesByIngredient, Map<Integer, Integer> ingredientCounts,
+                            Long recipeId, Collection<Long> ingredientIds) {
+        if (recipeId > Integer.MAX_VALUE) {
+            return;
+        }
+        int recipe = recipeId.intValue();
+        for (Long ingredientId : ingredientIds) {
+            if (recipesByIngredient.computeIfAbsent(ingredientId, id -> new RoaringBitmap()).checkedAdd(recipe)) {
+                ingredientCounts.merge(recipe, 1, Integer::sum);
+            }
+        }
+    }
+
+    /**
+     * Ranks the recipes using at least one pantry ingredient by the share of their ingredients
+     * the pantry covers, then by the number of covered ingredients.
+     *
+     * @param pantry      Ingredient IDs the user has.
+     * @param minCoverage Minimum share (0..1) of a recipe's ingredients that must be in the pantry.
+     * @param limit       Maximum number of matches.
+     * @return The best matches, best first.
+     */
+    public List<Match> rank(Collection<Long> pantry, double minCoverage, int limit) {
+        List<Match> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            List<RoaringBitmap> bitmaps = new ArrayList<>();
+            for (Long ingredientId : new LinkedHashSet<>(pantry)) {
+                RoaringBitmap recipes = recipesByIngredient.get(ingredientId);
+                if (recipes != null) bitmaps.add(recipes);
+            }
+            if (bitmaps.isEmpty()) {
+                return List.of();
+            }
+            RoaringBitmap candidates = FastAggregation.or(bitmaps.iterator());
+            candidates.forEach((int recipe) -> {
+                int matched = 0;
+                for (RoaringBitmap b : bitmaps) {
+                    if (b.contains(recipe)) matched++;
+                }
+                int total = ingredientCounts.getOrDefault(recipe, matched);
+                if ((double) matched / total >= minCoverage) {
+                    matches.add(new Match(Integer.toUnsignedLong(recipe), matched, total));
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        return matches.stream()
+                .sorted(Comparator.comparingDouble(Match::coverage).reversed()
+                        .thenComparing(Comparator.comparingInt(Match::matched).reversed())
+                        .thenComparingLong(Match::recipeId))
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * A recipe and how many of its ingredients the pantry covers.
+     */
+    public record Match(long recipeId, int matched, int total) {
+        public double coverage() {
+            return (double) matched / total;
+        }
+    }
+}
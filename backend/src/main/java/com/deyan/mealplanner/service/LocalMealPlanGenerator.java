@@ -0,0 +1,277 @@
+package com.deyan.mealplanner.service;
+
+import com.deyan.mealplanner.dto.MealPlanDTO;
+import com.deyan.mealplanner.service.RecipeCatalogIndex.Snapshot;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Assembles meal plans from the local recipe catalog instead of Spoonacular.
+ * <p>
+ * Every recipe in the {@link RecipeCatalogIndex} is a candidate. For each day a randomized
+ * local search picks breakfast, lunch and dinner so that the day's totals land within
+ * {@link MealPlanService#THRESHOLD_KCAL} / {@link MealPlanService#THRESHOLD_MACRO} of the
+ * targets. The result has the same shape as {@link com.deyan.mealplanner.service.interfaces.RecipeAPIAdapter#generateMealPlan},
+ * so the rest of plan creation does not care where the plan came from.
+ * <p>
+ * Known limitation: the catalog has no notion of meal type, so the three recipes of a day are
+ * assigned to breakfast, lunch and dinner purely by ascending calories. A heavy dinner-style
+ * recipe can end up as breakfast when it is the lightest of its day.
+ */
+@Slf4j
+@Component
+public class LocalMealPlanGenerator {
+
+    private static final int SLOTS_PER_DAY = 3;
+
+    private final RecipeCatalogIndex index;
+    private final boolean enabled;
+    private final int restarts;
+    private final int neighbours;
+
+    /**
+     * Constructs the generator.
+     *
+     * @param index      The in-memory catalog the plans are built from.
+     * @param enabled    Whether local generation is attempted at all.
+     * @param restarts   Random restarts of the search per day before giving up.
+     * @param neighbours Replacement candidates considered per slot in each search step.
+     */
+    public LocalMealPlanGenerator(RecipeCatalogIndex index,
+                                  @Value("${mealplanner.local-generator.enabled:true}") boolean enabled,
+                                  @Value("${mealplanner.local-generator.restarts:8}") int restarts,
+                                  @Value("${mealplanner.local-generator.neighbours:32}") int neighbours) {
+        this.index = index;
+        this.enabled = enabled;
+        this.restarts = Math.max(1, restarts);
+        this.neighbours = Math.max(1, neighbours);
+    }
+
+    /**
+     * Tries to build a plan from the local catalog.
+     *
+     * @param targetKcal Target daily calories; local generation needs it.
+     * @param p          Target protein in grams (nullable, unconstrained if null).
+     * @param c          Target carbs in grams (nullable, unconstrained if null).
+     * @param f          Target fat in grams (nullable, unconstrained if null).
+     * @param days       Number of days.
+     * @return The plan, with meals in slot order and the average daily nutrients; empty if
+     *         the catalog cannot meet the targets within the tolerances.
+     */
+    public Optional<MealPlanDTO> generate(Integer targetKcal, Integer p, Integer c, Integer f, int days) {
+        if (!enabled || targetKcal == null) {
+            return Optional.empty();
+        }
+        Snapshot catalog = index.snapshot();
+        if (catalog.size() < SLOTS_PER_DAY) {
+            return Optional.empty();
+        }
+        Target target = new Target(targetKcal, p, c, f);
+        int[][] plan = search(catalog, target, days, restarts, neighbours, ThreadLocalRandom.current());
+        if (plan == null) {
+            log.debug("Local catalog ({} recipes) cannot meet kcal={} P={} C={} F={}, falling back",
+                    catalog.size(), targetKcal, p, c, f);
+            return Optional.empty();
+        }
+        return Optional.of(toMealPlan(catalog, plan));
+    }
+
+    /**
+     * Picks three recipes per day that meet the targets.
+     * <p>
+     * Each day starts from a random triple and repeatedly replaces the one slot whose swap
+     * lowers the normalized error the most, until no swap helps (hill climbing). The swaps
+     * tried for a slot are the {@code neighbours} recipes {@link Snapshot#nearest nearest} to
+     * what the other two slots leave to reach the targets, so a step costs a few index lookups
+     * instead of a pass over the catalog. This is restarted from another random triple until
+     * the day is within tolerance or the restarts run out. Recipes are not repeated across
+     * days while the catalog is large enough.
+     *
+     * @param catalog    The candidates.
+     * @param target     The daily targets.
+     * @param days       Number of days.
+     * @param restarts   Restarts per day.
+     * @param neighbours Replacement candidates per slot and step.
+     * @param random     Source of the random starting points.
+     * @return Per day, the positions in {@code catalog} ordered breakfast, lunch, dinner
+     *         (lightest to heaviest); null if some day cannot be met.
+     */
+    static int[][] search(Snapshot catalog, Target target, int days, int restarts, int neighbours, Random random) {
+        int n = catalog.size();
+        boolean[] used = new boolean[n];
+        int usedCount = 0;
+        boolean reuse = n < SLOTS_PER_DAY * days;
+        int[][] plan = new int[days][];
+
+        for (int day = 0; day < days; day++) {
+            int[] best = null;
+            double bestError = Double.MAX_VALUE;
+            for (int attempt = 0; attempt < restarts && (best == null || !isMet(catalog, target, best)); attempt++) {
+                if (n - usedCount < SLOTS_PER_DAY) {
+                    return null;
+                }
+                int[] triple = randomTriple(n, used, random);
+                double error = climb(catalog, target, triple, used, neighbours);
+                if (error < bestError) {
+                    bestError = error;
+                    best = triple;
+                }
+            }
+            if (best == null || !isMet(catalog, target, best)) {
+                return null;
+            }
+            // positions are in calorie order, so sorting them orders the meals lightest first
+            Arrays.sort(best);
+            plan[day] = best;
+            if (!reuse) {
+                for (int i : best) used[i] = true;
+                usedCount += SLOTS_PER_DAY;
+            }
+        }
+        return plan;
+    }
+
+    // rejection sampling: at most 3 * days positions are used, so a free one is found quickly
+    private static int[] randomTriple(int n, boolean[] used, Random random) {
+        int[] triple = new int[SLOTS_PER_DAY];
+        for (int s = 0; s < SLOTS_PER_DAY; s++) {
+            int i;
+            do {
+                i = random.nextInt(n);
+            } while (used[i] || contains(triple, s, i));
+            triple[s] = i;
+        }
+        return triple;
+    }
+
+    /**
+     * Improves {@code triple} in place by best single-slot swaps; returns its final error.
+     */
+    private static double climb(Snapshot catalog, Target target, int[] triple, boolean[] used, int neighbours) {
+        double error = error(catalog, target, triple);
+        while (true) {
+            int bestSlot = -1;
+            int bestCandidate = -1;
+            double bestError = error;
+            for (int slot = 0; slot < SLOTS_PER_DAY; slot++) {
+                int current = triple[slot];
+                double kcal = 0, protein = 0, carb = 0, fat = 0;
+                for (int s = 0; s < SLOTS_PER_DAY; s++) {
+                    if (s == slot) continue;
+                    kcal += catalog.kcal(triple[s]);
+                    protein += catalog.protein(triple[s]);
+                    carb += catalog.carb(triple[s]);
+                    fat += catalog.fat(triple[s]);
+                }
+                // an unconstrained macro is aimed at what the slot supplies now
+                int[] near = catalog.nearest(target.kcal() - kcal,
+                        target.protein() != null ? target.protein() - protein : catalog.protein(current),
+                        target.carb() != null ? target.carb() - carb : catalog.carb(current),
+                        target.fat() != null ? target.fat() - fat : catalog.fat(current),
+                        neighbours);
+                for (int i : near) {
+                    if (used[i] || contains(triple, SLOTS_PER_DAY, i)) continue;
+                    triple[slot] = i;
+                    double e = error(catalog, target, triple);
+                    if (e < bestError) {
+                        bestError = e;
+                        bestSlot = slot;
+                        bestCandidate = i;
+                    }
+                }
+                triple[slot] = current;
+            }
+            if (bestSlot < 0) {
+                return error;
+            }
+            triple[bestSlot] = bestCandidate;
+            error = bestError;
+        }
+    }
+
+    private static boolean contains(int[] triple, int length, int i) {
+        for (int s = 0; s < length; s++) {
+            if (triple[s] == i) return true;
+        }
+        return false;
+    }
+
+    static double error(Snapshot catalog, Target target, int[] day) {
+        double k = 0, p = 0, c = 0, f = 0;
+        for (int i : day) {
+            k += catalog.kcal(i);
+            p += catalog.protein(i);
+            c += catalog.carb(i);
+            f += catalog.fat(i);
+        }
+        return target.error(k, p, c, f);
+    }
+
+    static boolean isMet(Snapshot catalog, Target target, int[] day) {
+        double k = 0, p = 0, c = 0, f = 0;
+        for (int i : day) {
+            k += catalog.kcal(i);
+            p += catalog.protein(i);
+            c += catalog.carb(i);
+            f += catalog.fat(i);
+        }
+        return target.isMet(k, p, c, f);
+    }
+
+    private static MealPlanDTO toMealPlan(Snapshot catalog, int[][] plan) {
+        List<MealPlanDTO.Meal> meals = new ArrayList<>();
+        double kcal = 0, protein = 0, carb = 0, fat = 0;
+        for (int day = 0; day < plan.length; day++) {
+            for (int slot = 0; slot < SLOTS_PER_DAY; slot++) {
+                int i = plan[day][slot];
+                // only the ID is used downstream; the recipe itself is resolved through the catalog adapter
+                meals.add(new MealPlanDTO.Meal((long) day * SLOTS_PER_DAY + slot, catalog.id(i), null, null, 0, null, null));
+                kcal += catalog.kcal(i);
+                protein += catalog.protein(i);
+                carb += catalog.carb(i);
+                fat += catalog.fat(i);
+            }
+        }
+        int days = plan.length;
+        return new MealPlanDTO(meals, new MealPlanDTO.Nutrients(
+                perDay(kcal, days), perDay(protein, days), perDay(fat, days), perDay(carb, days)));
+    }
+
+    private static BigDecimal perDay(double total, int days) {
+        return BigDecimal.valueOf(total / days).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Daily targets; a null macro is not constrained.
+     */
+    record Target(int kcal, Integer protein, Integer carb, Integer fat) {
+
+        /**
+         * Sum of the deviations of a day's totals, each relative to its tolerance.
+         * Below 1 per nutrient means that nutrient is within tolerance.
+         */
+        double error(double k, double p, double c, double f) {
+            return Math.abs(k - kcal) / MealPlanService.THRESHOLD_KCAL
+                    + deviation(p, protein) + deviation(c, carb) + deviation(f, fat);
+        }
+
+        boolean isMet(double k, double p, double c, double f) {
+            return Math.abs(k - kcal) <= MealPlanService.THRESHOLD_KCAL
+                    && deviation(p, protein) <= 1 && deviation(c, carb) <= 1 && deviation(f, fat) <= 1;
+        }
+
+        private static double deviation(double actual, Integer target) {
+            return target == null ? 0 : Math.abs(actual - target) / MealPlanService.THRESHOLD_MACRO;
+        }
+    }
+}
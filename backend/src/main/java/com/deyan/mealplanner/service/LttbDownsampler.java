@@ -0,0 +1,133 @@
+package com.deyan.mealplanner.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Largest-Triangle-Three-Buckets downsampling over a stream of points in x order.
+ * <p>
+ * The first and last points are always kept. The points in between are split into
+ * {@code threshold - 2} buckets of equal count, and from each bucket the point forming the largest
+ * triangle with the previously kept point and the average of the next bucket is kept. That keeps
+ * peaks and dips a plain average would flatten. Points are fed one at a time and only the current
+ * and next bucket are buffered, so the input never has to be held in memory; the total count must
+ * be known up front.
+ *
+ * @param <T> The point type.
+ */
+final class LttbDownsampler<T> {
+
+    private final int count;
+    private final int threshold;
+    private final ToDoubleFunction<T> x;
+    private final ToDoubleFunction<T> y;
+    private final boolean keepAll;
+    private final double bucketSize;
+    private final List<T> out = new ArrayList<>();
+
+    private int index;
+    private T selected;
+    private int bucket;
+    private List<T> current = new ArrayList<>();
+    private List<T> next = new ArrayList<>();
+
+    /**
+     * @param count     Number of points that will be added.
+     * @param threshold Number of points to keep; below 3, or at least {@code count}, keeps everything.
+     * @param x         The x coordinate of a point (must be non-decreasing in input order).
+     * @param y         The y coordinate of a point.
+     */
+    LttbDownsampler(int count, int threshold, ToDoubleFunction<T> x, ToDoubleFunction<T> y) {
+        this.count = count;
+        this.threshold = threshold;
+        this.x = x;
+        this.y = y;
+        this.keepAll = threshold < 3 || threshold >= count;
+        this.bucketSize = keepAll ? 0 : (double) (count - 2) / (threshold - 2);
+    }
+
+    void add(T point) {
+        if (index >= count) {
+            throw new IllegalStateException("More than the announced " + count + " points");
+        }
+        int i = index++;
+        if (keepAll) {
+            out.add(point);
+            return;
+        }
+        if (i == 0) {
+            keep(point);
+            return;
+        }
+        if (i == count - 1) {
+            if (next.isEmpty()) {
+                select(current, x.applyAsDouble(point), y.applyAsDouble(point));
+            } else {
+                select(current, averageX(next), averageY(next));
+                select(next, x.applyAsDouble(point), y.applyAsDouble(point));
+            }
+            keep(point);
+            return;
+        }
+        int b = bucketOf(i);
+        if (b == bucket) {
+            current.add(point);
+        } else if (b == bucket + 1) {
+            next.add(point);
+        } else {
+            // the bucket after next has started, so next is complete and current can be decided
+            select(current, averageX(next), averageY(next));
+            current = next;
+            next = new ArrayList<>();
+            next.add(point);
+            bucket++;
+        }
+    }
+
+    /**
+     * @return The kept points in input order.
+     * @throws IllegalStateException If fewer points than announced were added.
+     */
+    List<T> result() {
+        if (index != count) {
+            throw new IllegalStateException("Expected " + count + " points, got " + index);
+        }
+        return out;
+    }
+
+    // bucket b holds the inner indices i with b <= (i - 1) / size < b + 1; none is empty since size >= 1
+    private int bucketOf(int i) {
+        return Math.min(threshold - 3, (int) ((i - 1) / bucketSize));
+    }
+
+    private void select(List<T> candidates, double cx, double cy) {
+        double ax = x.applyAsDouble(selected);
+        double ay = y.applyAsDouble(selected);
+        T best = null;
+        double bestArea = -1;
+        for (T p : candidates) {
+            double area = Math.abs((ax - cx) * (y.applyAsDouble(p) - ay) - (ax - x.applyAsDouble(p)) * (cy - ay));
+            if (area > bestArea) {
+                bestArea = area;
+                best = p;
+            }
+        }
+        if (best != null) {
+            keep(best);
+        }
+    }
+
+    private void keep(T point) {
+        out.add(point);
+        selected = point;
+    }
+
+    private double averageX(List<T> points) {
+        return points.stream().mapToDouble(x).average().orElseThrow();
+    }
+
+    private double averageY(List<T> points) {
+        return points.stream().mapToDouble(y).average().orElseThrow();
+    }
+}
@@ -0,0 +1,203 @@
+package com.deyan.mealplanner.service;
+
+import com.deyan.mealplanner.dto.MealPlanJobDTO;
+import com.deyan.mealplanner.exceptions.BadRequestException;
+import com.deyan.mealplanner.exceptions.ExternalApiQuotaException;
+import com.deyan.mealplanner.exceptions.ExternalApiUnavailableException;
+import com.deyan.mealplanner.exceptions.JobQueueFullException;
+import com.deyan.mealplanner.exceptions.NotFoundException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs meal-plan generation in the background so request threads are not blocked
+ * by the Spoonacular round trip.
+ * <p>
+ * Jobs are queued on a dedicated, bounded executor. A user has at most one queued or
+ * running job; submitting again returns that job. When the queue is full new jobs are
+ * rejected with a {@link JobQueueFullException}. Finished jobs are kept in memory for
+ * {@code mealplanner.plan-jobs.retention-minutes} so clients can poll their result.
+ */
+@Slf4j
+@Service
+public class MealPlanJobService {
+
+    public enum Status { QUEUED, RUNNING, DONE, FAILED }
+
+    private final MealPlanService mealPlanService;
+    private final ThreadPoolExecutor executor;
+    private final Duration retention;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final Map<Long, String> activeByUser = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs the service and its executor.
+     *
+     * @param mealPlanService  Service that generates and persists the plans.
+     * @param threads          Number of worker threads.
+     * @param queueCapacity    Maximum number of jobs waiting for a worker.
+     * @param retentionMinutes How long finished jobs stay available for polling.
+     */
+    public MealPlanJobService(MealPlanService mealPlanService,
+                              @Value("${mealplanner.plan-jobs.threads:2}") int threads,
+                              @Value("${mealplanner.plan-jobs.queue-capacity:20}") int queueCapacity,
+                              @Value("${mealplanner.plan-jobs.retention-minutes:30}") long retentionMinutes) {
+        this.mealPlanService = mealPlanService;
+        this.retention = Duration.ofMinutes(retentionMinutes);
+
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                threads, threads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "plan-job-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Queues a plan generation for the user, or returns the user's job that is still pending.
+     *
+     * @param userId     The ID of the user.
+     * @param targetKcal Target daily calories (nullable).
+     * @param p          Target protein in grams (nullable).
+     * @param c          Target carbs in grams (nullable).
+     * @param f          Target fat in grams (nullable).
+     * @param days       Number of days (1 or 7).
+     * @return The status of the queued (or already pending) job.
+     * @throws JobQueueFullException if the job queue is full.
+     */
+    public MealPlanJobDTO submit(long userId, Integer targetKcal, Integer p, Integer c, Integer f, Integer days) {
+        if (days == null || (days != 1 && days != 7)) {
+            throw new BadRequestException("Days must be 1 or 7");
+        }
+        evictExpired();
+
+        Job created = new Job(UUID.randomUUID().toString(), userId);
+        String jobId = activeByUser.compute(userId, (uid, existing) -> {
+            Job pending = existing != null ? jobs.get(existing) : null;
+            if (pending != null && !pending.isFinished()) {
+                return existing;                       // de-duplicate per user
+            }
+            jobs.put(created.id, created);
+            return created.id;
+        });
+        if (!jobId.equals(created.id)) {
+            return toDto(jobs.get(jobId));
+        }
+
+        // submitted outside compute(): a rejection must not escape the remapping function
+        try {
+            executor.execute(() -> run(created, targetKcal, p, c, f, days));
+        } catch (RejectedExecutionException e) {
+            activeByUser.remove(userId, created.id);
+            jobs.remove(created.id);
+            throw new JobQueueFullException("Too many meal plans are being generated, please retry shortly.");
+        }
+        return toDto(created);
+    }
+
+    /**
+     * Returns the status of a job owned by the user.
+     * A failed job is reported with status {@code FAILED} and a fixed message for the kind of
+     * failure, not as an error response, so a client can tell it apart from a full queue (429)
+     * on submit.
+     *
+     * @param userId The ID of the user.
+     * @param jobId  The ID of the job.
+     * @return The job status, including the plan ID once it is done.
+     * @throws NotFoundException if the job does not exist, expired or belongs to another user.
+     */
+    public MealPlanJobDTO getJob(long userId, String jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null || job.userId != userId) {
+            throw new NotFoundException("Meal plan job not found: " + jobId);
+        }
+        return toDto(job);
+    }
+
+    /**
+     * Executes a job on a worker thread and records its outcome.
+     */
+    private void run(Job job, Integer targetKcal, Integer p, Integer c, Integer f, Integer days) {
+        job.status = Status.RUNNING;
+        try {
+            job.planId = mealPlanService.createPlan(job.userId, targetKcal, p, c, f, days);
+            job.status = Status.DONE;
+        } catch (RuntimeException e) {
+            log.warn("Meal plan job {} for user {} failed", job.id, job.userId, e);
+            job.error = failureMessage(e);
+            job.status = Status.FAILED;
+        } finally {
+            job.finishedAt = Instant.now();
+            activeByUser.remove(job.userId, job.id);
+        }
+    }
+
+    /**
+     * Maps a failure to the message shown to the client. Exception messages can carry
+     * upstream details (status codes, request parameters), so they only go to the log.
+     */
+    static String failureMessage(RuntimeException e) {
+        if (e instanceof ExternalApiQuotaException) {
+            return ExternalApiQuotaException.DEFAULT_MESSAGE;
+        }
+        if (e instanceof ExternalApiUnavailableException) {
+            return ExternalApiUnavailableException.DEFAULT_MESSAGE;
+        }
+        if (e instanceof BadRequestException) {
+            return "The meal plan request is invalid.";
+        }
+        return "Meal plan generation failed, please try again later.";
+    }
+
+    /**
+     * Drops finished jobs that are older than the retention period.
+     */
+    private void evictExpired() {
+        Instant cutoff = Instant.now().minus(retention);
+        jobs.values().removeIf(j -> j.finishedAt != null && j.finishedAt.isBefore(cutoff));
+    }
+
+    private MealPlanJobDTO toDto(Job job) {
+        return new MealPlanJobDTO(job.id, job.status.name(), job.planId, job.error);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * In-memory state of a single generation job.
+     */
+    private static final class Job {
+        final String id;
+        final long userId;
+        volatile Status status = Status.QUEUED;
+        volatile Long planId;
+        volatile String error;
+        volatile Instant finishedAt;
+
+        Job(String id, long userId) {
+            this.id = id;
+            this.userId = userId;
+        }
+
+        boolean isFinished() {
+            return finishedAt != null;
+        }
+    }
+}
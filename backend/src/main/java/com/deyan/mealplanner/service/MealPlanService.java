@@ -3,17 +3,38 @@ package com.deyan.mealplanner.service;
 import com.deyan.mealplanner.dto.*;
 import com.deyan.mealplanner.exceptions.BadRequestException;
 import com.deyan.mealplanner.exceptions.ExternalApiQuotaException;
+import com.deyan.mealplanner.exceptions.ExternalApiUnavailableException;
 import com.deyan.mealplanner.exceptions.NotFoundException;
 import com.deyan.mealplanner.service.interfaces.RecipeAPIAdapter;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.jooq.Condition;
 import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.JSONB;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 import static com.deyan.mealplanner.jooq.tables.Ingredient.INGREDIENT;
 import static com.deyan.mealplanner.jooq.tables.MealPlan.MEAL_PLAN;
@@ -22,38 +43,50 @@ import static com.deyan.mealplanner.jooq.tables.Recipe.RECIPE;
 import static com.deyan.mealplanner.jooq.tables.RecipeIngredient.RECIPE_INGREDIENT;
 import static com.deyan.mealplanner.jooq.tables.ShoppingList.SHOPPING_LIST;
 import static com.deyan.mealplanner.jooq.tables.ShoppingListItem.SHOPPING_LIST_ITEM;
+import static org.jooq.Records.mapping;
+import static org.jooq.impl.DSL.*;
 
 @Slf4j
 @Service
 @Transactional
 public class MealPlanService {
     private final RecipeAPIAdapter external;
+    private final RecipeFetcher fetcher;
+    private final RecipeService recipes;
     private final DSLContext db;
-    private final int THRESHOLD_KCAL=200;
-    private final int THRESHOLD_MACRO=20;
-    private static final Map<String, BigDecimal> UNIT_TO_GRAMS = Map.ofEntries(
-            Map.entry("g", BigDecimal.ONE),
-            Map.entry("gram", BigDecimal.ONE),
-            Map.entry("grams", BigDecimal.ONE),
-            Map.entry("tbsp", new BigDecimal("15")),
-            Map.entry("tablespoon", new BigDecimal("15")),
-            Map.entry("tablespoons", new BigDecimal("15")),
-            Map.entry("tsp", new BigDecimal("5")),
-            Map.entry("teaspoon", new BigDecimal("5")),
-            Map.entry("teaspoons", new BigDecimal("5")),
-            Map.entry("cup", new BigDecimal("240")),
-            Map.entry("cups", new BigDecimal("240")),
-            Map.entry("clove", new BigDecimal("3")),
-            Map.entry("pinch", new BigDecimal("0.3")),
-            Map.entry("medium", new BigDecimal("100")),
-            Map.entry("serving", new BigDecimal("150"))
-    );
-    public MealPlanService(RecipeAPIAdapter external, DSLContext dsl) {
+    private final TransactionTemplate tx;
+    private final ObjectMapper objectMapper;
+    private final UnitConverter units;
+    private final LocalMealPlanGenerator localGenerator;
+    private final PlanRepairer repairer;
+    private final IngredientRecipeIndex ingredientIndex;
+    static final int THRESHOLD_KCAL=200;
+    static final int THRESHOLD_MACRO=20;
+    static final int MAX_PAGE_SIZE = 100;
+    private static final List<String> MEAL_SLOTS = List.of("breakfast", "lunch", "dinner");
+    public MealPlanService(RecipeAPIAdapter external, RecipeFetcher fetcher, RecipeService recipes,
+                           DSLContext dsl, PlatformTransactionManager txManager, ObjectMapper objectMapper,
+                           UnitConverter units, LocalMealPlanGenerator localGenerator,
+                           PlanRepairer repairer, IngredientRecipeIndex ingredientIndex) {
         this.external = external;
+        this.fetcher = fetcher;
+        this.recipes = recipes;
         this.db = dsl;
+        this.tx = new TransactionTemplate(txManager);
+        this.objectMapper = objectMapper;
+        this.units = units;
+        this.localGenerator = localGenerator;
+        this.repairer = repairer;
+        this.ingredientIndex = ingredientIndex;
     }
     /**
-     * Creates a new meal plan for a user by calling the external API and persisting the result.
+     * Creates a new meal plan for a user and persists it.
+     * <p>
+     * The plan is assembled from the local recipe catalog when it can meet the targets
+     * (see {@link LocalMealPlanGenerator}); otherwise it is generated by the external API.
+     * Runs in two phases: all Spoonacular calls happen first without a transaction (so no pooled
+     * connection is held while waiting on the network), then the resolved plan, repaired if it
+     * misses the targets, is written in one short transaction.
      *
      * @param userId     The ID of the user.
      * @param targetKcal Target daily calories (nullable).
@@ -63,6 +96,7 @@ public class MealPlanService {
      * @param days       Number of days (1 or 7).
      * @return The ID of the created meal plan.
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public long createPlan(long userId,
                            Integer targetKcal,
                            Integer p, Integer c, Integer f,
@@ -70,132 +104,286 @@ public class MealPlanService {
         if(days != 1 && days!=7){
             throw new BadRequestException("Days must be 1 or 7");
         }
-        MealPlanDTO apiPlan = external.generateMealPlan(targetKcal, days);
+        /* ---------- network phase (no transaction) ---------- */
+        MealPlanDTO apiPlan = localGenerator.generate(targetKcal, p, c, f, days)
+                .orElseGet(() -> external.generateMealPlan(targetKcal, days));
         if (apiPlan.meals() == null || apiPlan.meals().isEmpty()) {
             throw new ExternalApiQuotaException(
                     "Spoonacular returned no meals for kcal=" + targetKcal + ", days=" + days);
         }
-        int targetCalories = (targetKcal != null) ? targetKcal : apiPlan.nutrients().calories().intValue();
-        int protein = p != null ? p
-                : apiPlan.nutrients().protein().intValue();
-        int carb = c   != null ? c
-                : apiPlan.nutrients().carbohydrates().intValue();
-        int fats = f     != null ? f
-                : apiPlan.nutrients().fat().intValue();
-        int actualKcal = apiPlan.nutrients().calories().intValue();
-        int actualProtein = apiPlan.nutrients().protein().intValue();
-        int actualCarb = apiPlan.nutrients().carbohydrates().intValue();
-        int actualFat = apiPlan.nutrients().fat().intValue();
-
-        Long planId = db.insertInto(MEAL_PLAN)
-                .set(MEAL_PLAN.USER_ID, userId)
-                .set(MEAL_PLAN.TARGET_KCAL, targetCalories)
-                .set(MEAL_PLAN.TARGET_PROTEIN_G, protein)
-                .set(MEAL_PLAN.TARGET_CARB_G, carb)
-                .set(MEAL_PLAN.TARGET_FAT_G, fats)
-                .set(MEAL_PLAN.ACTUAL_KCAL, actualKcal)
-                .set(MEAL_PLAN.ACTUAL_PROTEIN_G, actualProtein)
-                .set(MEAL_PLAN.ACTUAL_CARB_G, actualCarb)
-                .set(MEAL_PLAN.ACTUAL_FAT_G, actualFat)
-                .returning(MEAL_PLAN.ID)
-                .fetchOne(MEAL_PLAN.ID);
-
-
-        long kcalDelta  = Math.abs(actualKcal    - targetCalories);
-        long protDelta  = Math.abs(actualProtein - protein);
-        long carbDelta  = Math.abs(actualCarb    - carb);
-        long fatDelta   = Math.abs(actualFat     - fats);
-        if (kcalDelta > THRESHOLD_KCAL ||
-                protDelta > THRESHOLD_MACRO ||
-                carbDelta > THRESHOLD_MACRO ||
-                fatDelta  > THRESHOLD_MACRO) {
-
+        Macros target = new Macros(
+                targetKcal != null ? targetKcal : apiPlan.nutrients().calories().intValue(),
+                p != null ? p : apiPlan.nutrients().protein().intValue(),
+                c != null ? c : apiPlan.nutrients().carbohydrates().intValue(),
+                f != null ? f : apiPlan.nutrients().fat().intValue());
+
+        List<RecipeFetcher.ResolvedMeal> resolved = fetcher.fetchAll(apiPlan.meals());
+        if (resolved.isEmpty()) {
+            log.warn("Could not fetch any recipe of the generated plan (kcal={}, days={})", targetKcal, days);
+            throw new ExternalApiUnavailableException();
+        }
+        // meals that could not be fetched are missing from the plan, so they must not count
+        Macros fetched = actualMacros(resolved, days);
+        List<RecipeFetcher.ResolvedMeal> meals = misses(target, fetched) ? repair(resolved, target) : resolved;
+        Macros actual = meals == resolved ? fetched : actualMacros(meals, days);
+
+        /* ---------- write phase (one short transaction) ---------- */
+        Long planId = tx.execute(status -> persistPlan(userId, target, fetched, actual, meals));
+        if (misses(target, actual)) {
             /* one central warning with the details */
             log.warn("⚠️  Plan {} differs from targets — kcal Δ={}, P Δ={}, C Δ={}, F Δ={}",
-                    planId, kcalDelta, protDelta, carbDelta, fatDelta);
+                    planId,
+                    Math.abs(actual.kcal() - target.kcal()), Math.abs(actual.protein() - target.protein()),
+                    Math.abs(actual.carb() - target.carb()), Math.abs(actual.fat() - target.fat()));
+        }
+        return planId;
+    }
+    /**
+     * Writes a fully resolved plan: the plan row, its recipes and ingredients, the meal slots
+     * and the shopping list. Must be called inside a transaction; performs no network I/O.
+     * <p>
+     * Every table is written with a single multi-row statement, so the number of round trips
+     * does not depend on the length of the plan.
+     *
+     * @param userId  The owner of the plan.
+     * @param target  The daily macro targets.
+     * @param fetched The daily macros of the meals as fetched; when they miss the targets,
+     *                the deltas before and after the repair are recorded.
+     * @param actual  The daily macros of the meals to store.
+     * @param meals   The meals to store, each carrying its slot index.
+     * @return The ID of the new plan.
+     */
+    private long persistPlan(long userId, Macros target, Macros fetched, Macros actual,
+                             List<RecipeFetcher.ResolvedMeal> meals) {
+        var plan = db.insertInto(MEAL_PLAN)
+                .set(MEAL_PLAN.USER_ID, userId)
+                .set(MEAL_PLAN.TARGET_KCAL, target.kcal())
+                .set(MEAL_PLAN.TARGET_PROTEIN_G, target.protein())
+                .set(MEAL_PLAN.TARGET_CARB_G, target.carb())
+                .set(MEAL_PLAN.TARGET_FAT_G, target.fat())
+                .set(MEAL_PLAN.ACTUAL_KCAL, actual.kcal())
+                .set(MEAL_PLAN.ACTUAL_PROTEIN_G, actual.protein())
+                .set(MEAL_PLAN.ACTUAL_CARB_G, actual.carb())
+                .set(MEAL_PLAN.ACTUAL_FAT_G, actual.fat());
+        if (misses(target, fetched)) {
+            plan = plan
+                    .set(MEAL_PLAN.KCAL_DELTA_BEFORE, fetched.kcal() - target.kcal())
+                    .set(MEAL_PLAN.PROTEIN_DELTA_BEFORE, fetched.protein() - target.protein())
+                    .set(MEAL_PLAN.CARB_DELTA_BEFORE, fetched.carb() - target.carb())
+                    .set(MEAL_PLAN.FAT_DELTA_BEFORE, fetched.fat() - target.fat())
+                    .set(MEAL_PLAN.KCAL_DELTA_AFTER, actual.kcal() - target.kcal())
+                    .set(MEAL_PLAN.PROTEIN_DELTA_AFTER, actual.protein() - target.protein())
+                    .set(MEAL_PLAN.CARB_DELTA_AFTER, actual.carb() - target.carb())
+                    .set(MEAL_PLAN.FAT_DELTA_AFTER, actual.fat() - target.fat());
+        }
+        Long planId = plan.returning(MEAL_PLAN.ID).fetchOne(MEAL_PLAN.ID);
+
+        upsertRecipes(meals);         // recipe table
+        upsertIngredients(meals);     // ingredient & recipe_ingredient
+
+        var slots = db.insertInto(MEAL_PLAN_RECIPE,
+                MEAL_PLAN_RECIPE.MEAL_PLAN_ID,
+                MEAL_PLAN_RECIPE.RECIPE_ID,
+                MEAL_PLAN_RECIPE.DAY_INDEX,
+                MEAL_PLAN_RECIPE.MEAL_SLOT);
+        for (RecipeFetcher.ResolvedMeal m : meals) {
+            int idx = m.index();
+            slots = slots.values(planId, m.recipe().id(), (short) (idx / 3),
+                    switch (idx % 3) { case 0 -> "breakfast"; case 1 -> "lunch"; default -> "dinner";});
         }
+        slots.execute();
 
+        buildShoppingList(planId);
+        rebuildSnapshot(planId);
+        return planId;
+    }
+    /**
+     * The daily macros of a plan, summed over its resolved meals. A macro a meal lacks counts
+     * as zero.
+     *
+     * @param meals The resolved meals.
+     * @param days  The plan's number of days.
+     * @return The daily macros.
+     */
+    private static Macros actualMacros(List<RecipeFetcher.ResolvedMeal> meals, int days) {
+        BigDecimal kcal = BigDecimal.ZERO, protein = BigDecimal.ZERO, carb = BigDecimal.ZERO, fat = BigDecimal.ZERO;
+        for (RecipeFetcher.ResolvedMeal m : meals) {
+            RecipeDetailsDTO.Nutrition n = m.macros();
+            if (n == null) continue;
+            kcal = kcal.add(orZero(n.calories()));
+            protein = protein.add(orZero(n.protein()));
+            carb = carb.add(orZero(n.carbohydrates()));
+            fat = fat.add(orZero(n.fat()));
+        }
+        return new Macros(perDay(kcal, days), perDay(protein, days), perDay(carb, days), perDay(fat, days));
+    }
 
-        int idx = 0;
-        for (MealPlanDTO.Meal m : apiPlan.meals()) {
+    private static BigDecimal orZero(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
 
-            RecipeDetailsDTO r = external.getRecipe(m.id());
+    private static int perDay(BigDecimal total, int days) {
+        return total.divide(BigDecimal.valueOf(days), 0, RoundingMode.HALF_UP).intValue();
+    }
 
-            upsertRecipe(r);              // recipe table
-            upsertIngredients(r);         // ingredient & recipe_ingredient
+    private static boolean misses(Macros target, Macros actual) {
+        return Math.abs(actual.kcal() - target.kcal()) > THRESHOLD_KCAL
+                || Math.abs(actual.protein() - target.protein()) > THRESHOLD_MACRO
+                || Math.abs(actual.carb() - target.carb()) > THRESHOLD_MACRO
+                || Math.abs(actual.fat() - target.fat()) > THRESHOLD_MACRO;
+    }
 
-            db.insertInto(MEAL_PLAN_RECIPE)
-                    .set(MEAL_PLAN_RECIPE.MEAL_PLAN_ID, planId)
-                    .set(MEAL_PLAN_RECIPE.RECIPE_ID,    r.id())
-                    .set(MEAL_PLAN_RECIPE.DAY_INDEX,    (short)(idx / 3))
-                    .set(MEAL_PLAN_RECIPE.MEAL_SLOT,
-                            switch (idx % 3) { case 0 -> "breakfast"; case 1 -> "lunch"; default -> "dinner";})
-                    .execute();
+    /**
+     * Repair stage for a plan that misses its targets: swaps the fewest meals of each
+     * off-target day for catalog recipes (see {@link PlanRepairer}). Runs before the plan is
+     * written, so the plan, shopping list and snapshot are only ever stored repaired. Only
+     * complete days whose meals all have known macros are searched; the replacements are read
+     * from the catalog in one bulk lookup, without network I/O.
+     *
+     * @param meals  The resolved meals of the plan.
+     * @param target The daily macro targets.
+     * @return The meals with the replacements in place; the same list if nothing was swapped.
+     */
+    private List<RecipeFetcher.ResolvedMeal> repair(List<RecipeFetcher.ResolvedMeal> meals, Macros target) {
+        Map<Integer, RecipeFetcher.ResolvedMeal[]> slots = new TreeMap<>();
+        Set<Long> inPlan = new HashSet<>();
+        for (RecipeFetcher.ResolvedMeal m : meals) {
+            slots.computeIfAbsent(m.index() / 3, d -> new RecipeFetcher.ResolvedMeal[MEAL_SLOTS.size()])[m.index() % 3] = m;
+            inPlan.add(m.recipe().id());
+        }
+        List<Integer> dayIndexes = new ArrayList<>();
+        List<PlanRepairer.Candidate[]> days = new ArrayList<>();
+        for (var day : slots.entrySet()) {
+            PlanRepairer.Candidate[] candidates = Arrays.stream(day.getValue())
+                    .map(MealPlanService::candidate)
+                    .toArray(PlanRepairer.Candidate[]::new);
+            if (Arrays.stream(candidates).allMatch(Objects::nonNull)) {
+                dayIndexes.add(day.getKey());
+                days.add(candidates);
+            }
+        }
 
-            idx++;
+        List<PlanRepairer.Swap> swaps = repairer.repair(days,
+                new LocalMealPlanGenerator.Target(target.kcal(), target.protein(), target.carb(), target.fat()),
+                inPlan);
+        if (swaps.isEmpty()) {
+            return meals;
         }
+        Map<Long, RecipeDetailsDTO> replacements = recipes.findFreshRecipes(
+                swaps.stream().map(PlanRepairer.Swap::recipeId).toList());
+
+        // a day is only changed when all of its replacements are still in the catalog
+        Map<Integer, RecipeFetcher.ResolvedMeal> replaced = new HashMap<>();
+        Map<Integer, List<PlanRepairer.Swap>> byDay = swaps.stream()
+                .collect(Collectors.groupingBy(PlanRepairer.Swap::day));
+        for (var day : byDay.entrySet()) {
+            if (!day.getValue().stream().allMatch(s -> replacements.containsKey(s.recipeId()))) continue;
+            for (PlanRepairer.Swap swap : day.getValue()) {
+                int index = dayIndexes.get(swap.day()) * 3 + swap.slot();
+                RecipeDetailsDTO recipe = replacements.get(swap.recipeId());
+                replaced.put(index, new RecipeFetcher.ResolvedMeal(index, recipe, recipe.nutrition()));
+            }
+        }
+        log.info("Repaired plan with {} swap(s)", replaced.size());
+        return meals.stream().map(m -> replaced.getOrDefault(m.index(), m)).toList();
+    }
 
-        buildShoppingList(planId);
-        return planId;
+    /**
+     * @return The meal as a repair candidate, or null if it is missing or lacks a macro.
+     */
+    private static PlanRepairer.Candidate candidate(RecipeFetcher.ResolvedMeal meal) {
+        RecipeDetailsDTO.Nutrition n = meal != null ? meal.macros() : null;
+        if (n == null || n.calories() == null || n.protein() == null
+                || n.carbohydrates() == null || n.fat() == null) {
+            return null;
+        }
+        return new PlanRepairer.Candidate(meal.recipe().id(), n.calories().doubleValue(),
+                n.protein().doubleValue(), n.carbohydrates().doubleValue(), n.fat().doubleValue());
     }
+
     /**
-     * Upserts a recipe record, including optional nutritional widget data.
+     * Upserts the recipe records of a plan, including their macros when known,
+     * in one multi-row statement. Recipes that appear in several slots are written once.
+     * Existing rows are only overwritten when they are stale, so recipes served from the
+     * local catalog keep their {@code fetched_at} stamp.
      *
-     * @param r Recipe data from external API.
+     * @param meals The resolved meals of the plan.
      */
-    private void upsertRecipe(RecipeDetailsDTO r) {
-        db.insertInto(RECIPE)
-                .set(RECIPE.ID,                     r.id())
-                .set(RECIPE.NAME,                   r.title())
-                .set(RECIPE.PREP_TIME,              r.readyInMinutes())
-                .set(RECIPE.SERVINGS,               r.servings())
-                .set(RECIPE.URL, r.sourceUrl() != null ? r.sourceUrl() : "")
-                .onConflict(RECIPE.ID).doUpdate()
-                .set(RECIPE.NAME, r.title())        // update title if it changed
+    private void upsertRecipes(List<RecipeFetcher.ResolvedMeal> meals) {
+        Map<Long, RecipeFetcher.ResolvedMeal> unique = new LinkedHashMap<>();
+        meals.forEach(m -> unique.putIfAbsent(m.recipe().id(), m));
+
+        var insert = db.insertInto(RECIPE,
+                RECIPE.ID, RECIPE.NAME, RECIPE.PREP_TIME, RECIPE.SERVINGS, RECIPE.URL,
+                RECIPE.CALORIES, RECIPE.PROTEIN, RECIPE.FAT, RECIPE.CARBOHYDRATES);
+        for (RecipeFetcher.ResolvedMeal m : unique.values()) {
+            RecipeDetailsDTO r = m.recipe();
+            RecipeDetailsDTO.Nutrition macros = m.macros();
+            insert = insert.values(
+                    r.id(),
+                    r.title(),
+                    r.readyInMinutes(),
+                    r.servings(),
+                    r.sourceUrl() != null ? r.sourceUrl() : "",
+                    macros != null ? macros.calories() : null,
+                    macros != null ? macros.protein() : null,
+                    macros != null ? macros.fat() : null,
+                    macros != null ? macros.carbohydrates() : null);
+        }
+        insert.onConflict(RECIPE.ID).doUpdate()
+                .set(RECIPE.NAME, excluded(RECIPE.NAME))        // update title if it changed
+                // keep the known macros when they were unavailable this time
+                .set(RECIPE.CALORIES, coalesce(excluded(RECIPE.CALORIES), RECIPE.CALORIES))
+                .set(RECIPE.PROTEIN, coalesce(excluded(RECIPE.PROTEIN), RECIPE.PROTEIN))
+                .set(RECIPE.FAT, coalesce(excluded(RECIPE.FAT), RECIPE.FAT))
+                .set(RECIPE.CARBOHYDRATES, coalesce(excluded(RECIPE.CARBOHYDRATES), RECIPE.CARBOHYDRATES))
+                .set(RECIPE.FETCHED_AT, currentLocalDateTime())
+                .where(recipes.isStale())
                 .execute();
-
-            external.fetchNutritionWidget(r.id()).ifPresent(widget -> {
-                BigDecimal kcal = parse(widget.calories());
-                BigDecimal protein = parse(widget.protein());
-                BigDecimal fat = parse(widget.fat());
-                BigDecimal carbs = parse(widget.carbs());
-
-                db.update(RECIPE)
-                        .set(RECIPE.CALORIES, kcal)
-                        .set(RECIPE.PROTEIN, protein)
-                        .set(RECIPE.FAT, fat)
-                        .set(RECIPE.CARBOHYDRATES, carbs)
-                        .where(RECIPE.ID.eq(r.id()))
-                        .execute();
-
-        });
     }
 
     /**
-     * Upserts ingredients and recipe-ingredient join records into the database.
+     * Upserts the ingredients and recipe-ingredient join records of a plan,
+     * one multi-row statement per table. The links are added to the
+     * {@link IngredientRecipeIndex} once the transaction commits.
      *
-     * @param r The full recipe details.
+     * @param meals The resolved meals of the plan.
      */
-    private void upsertIngredients(RecipeDetailsDTO r) {
-        for (var ing : r.extendedIngredients()) {
-
-            db.insertInto(INGREDIENT)
-                    .set(INGREDIENT.ID,   ing.id())
-                    .set(INGREDIENT.NAME, ing.name())
-                    .onConflictDoNothing()
-                    .execute();
+    private void upsertIngredients(List<RecipeFetcher.ResolvedMeal> meals) {
+        Map<Long, String> ingredients = new LinkedHashMap<>();
+        Map<Long, List<Long>> indexed = new LinkedHashMap<>();
+        var links = db.insertInto(RECIPE_INGREDIENT,
+                RECIPE_INGREDIENT.RECIPE_ID,
+                RECIPE_INGREDIENT.INGREDIENT_ID,
+                RECIPE_INGREDIENT.QUANTITY_G,
+                RECIPE_INGREDIENT.UNIT);
+        Set<Long> seenRecipes = new HashSet<>();
+        for (RecipeFetcher.ResolvedMeal m : meals) {
+            RecipeDetailsDTO r = m.recipe();
+            if (!seenRecipes.add(r.id()) || r.extendedIngredients() == null) continue;
+            for (var ing : r.extendedIngredients()) {
+                ingredients.putIfAbsent(ing.id(), ing.name());
+                indexed.computeIfAbsent(r.id(), id -> new ArrayList<>()).add(ing.id());
+                links = links.values(r.id(), ing.id(), ing.amount(), ing.unit());
+            }
+        }
+        if (ingredients.isEmpty()) {
+            return;
+        }
 
-            db.insertInto(RECIPE_INGREDIENT)
-                    .set(RECIPE_INGREDIENT.RECIPE_ID,     r.id())
-                    .set(RECIPE_INGREDIENT.INGREDIENT_ID, ing.id())
-                    .set(RECIPE_INGREDIENT.QUANTITY_G,      ing.amount())
-                    .set(RECIPE_INGREDIENT.UNIT,          ing.unit())
-                    .onConflictDoNothing()
-                    .execute();
+        var insert = db.insertInto(INGREDIENT, INGREDIENT.ID, INGREDIENT.NAME);
+        for (var e : ingredients.entrySet()) {
+            insert = insert.values(e.getKey(), e.getValue());
         }
+        insert.onConflictDoNothing().execute();
+
+        links.onConflictDoNothing().execute();
+        ingredientIndex.addAfterCommit(indexed);
     }
     /**
      * Builds a shopping list based on all ingredients in the plan.
+     * Quantities are converted to canonical units and summed per ingredient and unit,
+     * so every slot using an ingredient contributes to its total.
      *
      * @param planId The meal plan ID.
      */
@@ -205,180 +393,227 @@ public class MealPlanService {
                 planId
         );
 
-        // 1. Fetch all relevant ingredient quantities for this meal plan
+        // 1. Fetch all ingredient quantities of the plan, once per slot using them
         var ingredients = db.select(
                         RECIPE_INGREDIENT.INGREDIENT_ID,
+                        INGREDIENT.NAME,
                         RECIPE_INGREDIENT.QUANTITY_G,
                         RECIPE_INGREDIENT.UNIT
                 )
                 .from(MEAL_PLAN_RECIPE)
                 .join(RECIPE_INGREDIENT)
                 .on(MEAL_PLAN_RECIPE.RECIPE_ID.eq(RECIPE_INGREDIENT.RECIPE_ID))
+                .join(INGREDIENT).on(INGREDIENT.ID.eq(RECIPE_INGREDIENT.INGREDIENT_ID))
                 .where(MEAL_PLAN_RECIPE.MEAL_PLAN_ID.eq(planId))
                 .fetch();
 
-        // 2. Merge by ingredient_id
-        Map<Long, String> quantities = new LinkedHashMap<>();
-
+        // 2. Convert and sum by (ingredient, canonical unit)
+        Map<Long, Map<String, BigDecimal>> totals = new LinkedHashMap<>();
         for (var record : ingredients) {
-            Long ingId = record.get(RECIPE_INGREDIENT.INGREDIENT_ID);
-            BigDecimal rawAmount = record.get(RECIPE_INGREDIENT.QUANTITY_G);
-            String unit = record.get(RECIPE_INGREDIENT.UNIT);
-            String unitNormalized = unit != null ? unit.toLowerCase().trim() : "";
-            BigDecimal safeAmount = rawAmount != null ? rawAmount : BigDecimal.ZERO;
-
-            String quantityText;
-
-            if (UNIT_TO_GRAMS.containsKey(unitNormalized)) {
-                // Convert to grams
-                BigDecimal grams = safeAmount.multiply(UNIT_TO_GRAMS.get(unitNormalized));
-                quantityText = grams.stripTrailingZeros().toPlainString() + " g";
-            } else {
-                // No conversion, just keep the original unit if available
-                quantityText = safeAmount.stripTrailingZeros().toPlainString();
-                if (!unitNormalized.isEmpty()) {
-                    quantityText += " " + unitNormalized;
-                }
-            }
-
-            quantities.put(ingId, quantityText);
+            UnitConverter.Quantity q = units.toCanonical(
+                    record.get(INGREDIENT.NAME),
+                    record.get(RECIPE_INGREDIENT.QUANTITY_G),
+                    record.get(RECIPE_INGREDIENT.UNIT));
+            totals.computeIfAbsent(record.get(RECIPE_INGREDIENT.INGREDIENT_ID), id -> new LinkedHashMap<>())
+                    .merge(q.unit(), q.amount(), BigDecimal::add);
         }
 
-        // 3. Insert one row per ingredient
-        for (var entry : quantities.entrySet()) {
-            db.insertInto(SHOPPING_LIST_ITEM)
-                    .set(SHOPPING_LIST_ITEM.SHOPPING_LIST_ID, listId)
-                    .set(SHOPPING_LIST_ITEM.INGREDIENT_ID, entry.getKey())
-                    .set(SHOPPING_LIST_ITEM.QUANTITY, entry.getValue())
-                    .execute();
+        // 3. Insert all rows in one statement
+        if (totals.isEmpty()) {
+            return;
         }
+        var items = db.insertInto(SHOPPING_LIST_ITEM,
+                SHOPPING_LIST_ITEM.SHOPPING_LIST_ID,
+                SHOPPING_LIST_ITEM.INGREDIENT_ID,
+                SHOPPING_LIST_ITEM.AMOUNT,
+                SHOPPING_LIST_ITEM.UNIT);
+        for (var ingredient : totals.entrySet()) {
+            for (var amount : ingredient.getValue().entrySet()) {
+                items = items.values(listId, ingredient.getKey(), amount.getValue(), amount.getKey());
+            }
+        }
+        items.execute();
     }
     /**
      * Fetches the detailed view of a given meal plan for a user.
+     * The view is served from the plan's stored snapshot. If there is none (the plan predates
+     * snapshots, or a referenced recipe or ingredient changed) it is assembled and stored again.
      *
      * @param userId The user ID.
      * @param planId The plan ID.
      * @return A full {@link MealPlanDetailsDTO} with meals and shopping list.
      */
     public MealPlanDetailsDTO getPlanById(long userId, long planId) {
-        var plan = db.selectFrom(MEAL_PLAN)
+        var row = db.select(MEAL_PLAN.DETAILS_SNAPSHOT)
+                .from(MEAL_PLAN)
                 .where(MEAL_PLAN.ID.eq(planId).and(MEAL_PLAN.USER_ID.eq(userId)))
                 .fetchOne();
-        if (plan == null) throw new NotFoundException("Meal plan not found or not accessible");
-        var mealRecords = db.select(
-                        MEAL_PLAN_RECIPE.DAY_INDEX,
-                        MEAL_PLAN_RECIPE.MEAL_SLOT
-                )
-                .select(RECIPE.fields()) // separate call
-                .from(MEAL_PLAN_RECIPE)
-                .join(RECIPE).on(RECIPE.ID.eq(MEAL_PLAN_RECIPE.RECIPE_ID))
-                .where(MEAL_PLAN_RECIPE.MEAL_PLAN_ID.eq(planId))
-                .fetch();
-        int days = mealRecords.stream()
-                .mapToInt(r -> r.get(MEAL_PLAN_RECIPE.DAY_INDEX))
-                .max()
-                .orElse(0)
-                + 1;
-
-        var meals = mealRecords.stream().map(r -> {
-            var recipeId = r.get(RECIPE.ID);
-            var ingredients = db.select(
-                            INGREDIENT.ID,
-                            INGREDIENT.NAME,
-                            RECIPE_INGREDIENT.QUANTITY_G,
-                            RECIPE_INGREDIENT.UNIT
-                    ).from(RECIPE_INGREDIENT)
-                    .join(INGREDIENT).on(INGREDIENT.ID.eq(RECIPE_INGREDIENT.INGREDIENT_ID))
-                    .where(RECIPE_INGREDIENT.RECIPE_ID.eq(recipeId))
-                    .fetch()
-                    .stream()
-                    .map(ir -> new RecipeDetailsDTO.ExtendedIngredient(
-                            ir.get(INGREDIENT.ID),
-                            ir.get(INGREDIENT.NAME),
-                            ir.get(RECIPE_INGREDIENT.QUANTITY_G),
-                            ir.get(RECIPE_INGREDIENT.UNIT)
-                    )).toList();
-
-
-            var recipe = new MealPlanDetailsDTO.RecipeDTO(
-                    recipeId,
-                    r.get(RECIPE.NAME),
-                    r.get(RECIPE.PREP_TIME),
-                    r.get(RECIPE.SERVINGS),
-                    r.get(RECIPE.URL),
-                    ingredients
-            );
-
-            return new MealPlanDetailsDTO.MealSlotDTO(
-                    "Day " + r.get(MEAL_PLAN_RECIPE.DAY_INDEX),
-                    r.get(MEAL_PLAN_RECIPE.MEAL_SLOT),
-                    recipe
-            );
-        }).toList();
-        var rawItems = db.select(
-                        INGREDIENT.ID,
-                        INGREDIENT.NAME,
-                        SHOPPING_LIST_ITEM.QUANTITY
-                )
-                .from(SHOPPING_LIST_ITEM)
-                .join(SHOPPING_LIST).on(SHOPPING_LIST.ID.eq(SHOPPING_LIST_ITEM.SHOPPING_LIST_ID))
-                .join(INGREDIENT).on(INGREDIENT.ID.eq(SHOPPING_LIST_ITEM.INGREDIENT_ID))
-                .where(SHOPPING_LIST.MEAL_PLAN_ID.eq(planId))
-                .fetch()
-                .map(r -> new MealPlanDetailsDTO.ShoppingListItemDTO(
-                        r.get(INGREDIENT.ID),
-                        r.get(INGREDIENT.NAME),
-                        r.get(SHOPPING_LIST_ITEM.QUANTITY)
-                ));
-
-// 2. Deduplicate by name + unit (case-insensitive)
-            Map<String, BigDecimal> merged = new LinkedHashMap<>();
+        if (row == null) throw new NotFoundException("Meal plan not found or not accessible");
 
-        for (var item : rawItems) {
-            String name = item.name().toLowerCase().trim();
-            String quantityText = item.quantityText();
-
-            // Try to split into numeric value and unit
-            String numberPart = quantityText.replaceAll("[^\\d.]", "");
-            String unitPart = quantityText.replaceAll("[\\d.\\s]", "");
-
-            BigDecimal quantity;
+        if (row.value1() != null) {
             try {
-                quantity = new BigDecimal(numberPart);
-            } catch (Exception e) {
-                quantity = BigDecimal.ZERO;
+                return objectMapper.readValue(row.value1().data(), MealPlanDetailsDTO.class);
+            } catch (JsonProcessingException e) {
+                log.warn("Unreadable snapshot of meal plan {}, rebuilding: {}", planId, e.getMessage());
             }
+        }
+        return rebuildSnapshot(planId);
+    }
+
+    /**
+     * Returns the version of a plan without loading it, for conditional GETs.
+     *
+     * @param userId The user ID.
+     * @param planId The plan ID.
+     * @return The plan's version, derived from its ID and {@code updated_at}.
+     * @throws NotFoundException If the plan does not exist or belongs to another user.
+     */
+    public ResourceVersion getPlanVersion(long userId, long planId) {
+        return db.select(MEAL_PLAN.ID, MEAL_PLAN.UPDATED_AT)
+                .from(MEAL_PLAN)
+                .where(MEAL_PLAN.ID.eq(planId).and(MEAL_PLAN.USER_ID.eq(userId)))
+                .fetchOptional(r -> ResourceVersion.of("plan", r.value1(), r.value2()))
+                .orElseThrow(() -> new NotFoundException("Meal plan not found or not accessible"));
+    }
+
+    /**
+     * Returns the version of the user's most recent plan, for conditional GETs.
+     * The ETag contains the plan ID, so it changes when a newer plan is created.
+     *
+     * @param userId The user ID.
+     * @return The latest plan's version.
+     * @throws NotFoundException If the user has no plans.
+     */
+    public ResourceVersion getLatestPlanVersion(long userId) {
+        return db.select(MEAL_PLAN.ID, MEAL_PLAN.UPDATED_AT)
+                .from(MEAL_PLAN)
+                .where(MEAL_PLAN.USER_ID.eq(userId))
+                .orderBy(MEAL_PLAN.CREATED_AT.desc(), MEAL_PLAN.ID.desc())
+                .limit(1)
+                .fetchOptional(r -> ResourceVersion.of("plan", r.value1(), r.value2()))
+                .orElseThrow(() -> new NotFoundException("No meal plans found for user " + userId));
+    }
 
-            String key = name + "_" + unitPart;
-            merged.merge(key, quantity, BigDecimal::add);
+    /**
+     * Assembles the detailed view of a plan and stores it as the plan's snapshot.
+     *
+     * @param planId The plan ID.
+     * @return The assembled view.
+     * @throws NotFoundException If the plan does not exist.
+     */
+    public MealPlanDetailsDTO rebuildSnapshot(long planId) {
+        MealPlanDetailsDTO details = assemblePlan(planId);
+        try {
+            db.update(MEAL_PLAN)
+                    .set(MEAL_PLAN.DETAILS_SNAPSHOT, JSONB.valueOf(objectMapper.writeValueAsString(details)))
+                    .where(MEAL_PLAN.ID.eq(planId))
+                    .execute();
+        } catch (JsonProcessingException e) {
+            log.warn("Could not store snapshot of meal plan {}: {}", planId, e.getMessage());
         }
+        return details;
+    }
 
-// 3. Convert merged map back to ShoppingListItemDTOs
-        List<MealPlanDetailsDTO.ShoppingListItemDTO> shoppingList = merged.entrySet().stream()
-                .map(entry -> {
-                    String[] parts = entry.getKey().split("_");
-                    String name = parts[0];
-                    String unit = parts.length > 1 ? parts[1] : "";
-                    String quantityText = entry.getValue().toPlainString() + " " + unit;
-                    return new MealPlanDetailsDTO.ShoppingListItemDTO(null, name, quantityText);
-                }).toList();
+    /**
+     * Assembles the detailed view of a plan from its tables.
+     * The plan row, its meal slots with recipes and ingredients, and the shopping list are
+     * loaded in a single statement using nested {@code MULTISET}s.
+     *
+     * @param planId The plan ID.
+     * @return A full {@link MealPlanDetailsDTO} with meals and shopping list.
+     * @throws NotFoundException If the plan does not exist.
+     */
+    private MealPlanDetailsDTO assemblePlan(long planId) {
+        Field<List<MealPlanDetailsDTO.MealSlotDTO>> meals = multiset(
+                select(MEAL_PLAN_RECIPE.DAY_INDEX,
+                        MEAL_PLAN_RECIPE.MEAL_SLOT,
+                        RECIPE.ID,
+                        RECIPE.NAME,
+                        RECIPE.PREP_TIME,
+                        RECIPE.SERVINGS,
+                        RECIPE.URL,
+                        multiset(
+                                select(INGREDIENT.ID,
+                                        INGREDIENT.NAME,
+                                        RECIPE_INGREDIENT.QUANTITY_G,
+                                        RECIPE_INGREDIENT.UNIT)
+                                        .from(RECIPE_INGREDIENT)
+                                        .join(INGREDIENT).on(INGREDIENT.ID.eq(RECIPE_INGREDIENT.INGREDIENT_ID))
+                                        .where(RECIPE_INGREDIENT.RECIPE_ID.eq(RECIPE.ID))
+                        ).convertFrom(r -> r.map(mapping(RecipeDetailsDTO.ExtendedIngredient::new))))
+                        .from(MEAL_PLAN_RECIPE)
+                        .join(RECIPE).on(RECIPE.ID.eq(MEAL_PLAN_RECIPE.RECIPE_ID))
+                        .where(MEAL_PLAN_RECIPE.MEAL_PLAN_ID.eq(MEAL_PLAN.ID))
+                        .orderBy(MEAL_PLAN_RECIPE.DAY_INDEX, slotOrder())
+        ).convertFrom(r -> r.map(m -> new MealPlanDetailsDTO.MealSlotDTO(
+                "Day " + m.value1(),
+                m.value2(),
+                new MealPlanDetailsDTO.RecipeDTO(m.value3(), m.value4(), m.value5(), m.value6(), m.value7(), m.value8())
+        )));
+
+        Field<List<MealPlanDetailsDTO.ShoppingListItemDTO>> items = multiset(
+                select(INGREDIENT.ID,
+                        INGREDIENT.NAME,
+                        SHOPPING_LIST_ITEM.AMOUNT,
+                        SHOPPING_LIST_ITEM.UNIT)
+                        .from(SHOPPING_LIST_ITEM)
+                        .join(SHOPPING_LIST).on(SHOPPING_LIST.ID.eq(SHOPPING_LIST_ITEM.SHOPPING_LIST_ID))
+                        .join(INGREDIENT).on(INGREDIENT.ID.eq(SHOPPING_LIST_ITEM.INGREDIENT_ID))
+                        .where(SHOPPING_LIST.MEAL_PLAN_ID.eq(MEAL_PLAN.ID))
+                        .orderBy(INGREDIENT.NAME, SHOPPING_LIST_ITEM.UNIT)
+        ).convertFrom(r -> r.map(i -> new MealPlanDetailsDTO.ShoppingListItemDTO(
+                i.value1(), i.value2(), i.value3(), i.value4(), UnitConverter.format(i.value3(), i.value4()))));
+
+        Field<Integer> days = select(coalesce(max(MEAL_PLAN_RECIPE.DAY_INDEX).cast(Integer.class), -1).plus(1))
+                .from(MEAL_PLAN_RECIPE)
+                .where(MEAL_PLAN_RECIPE.MEAL_PLAN_ID.eq(MEAL_PLAN.ID))
+                .asField();
+
+        var row = db.select(MEAL_PLAN.ID,
+                        MEAL_PLAN.TARGET_KCAL, MEAL_PLAN.TARGET_PROTEIN_G, MEAL_PLAN.TARGET_CARB_G, MEAL_PLAN.TARGET_FAT_G,
+                        MEAL_PLAN.ACTUAL_KCAL, MEAL_PLAN.ACTUAL_PROTEIN_G, MEAL_PLAN.ACTUAL_CARB_G, MEAL_PLAN.ACTUAL_FAT_G,
+                        meals, items, days)
+                .from(MEAL_PLAN)
+                .where(MEAL_PLAN.ID.eq(planId))
+                .fetchOne();
+        if (row == null) throw new NotFoundException("Meal plan not found or not accessible");
 
         return new MealPlanDetailsDTO(
-                plan.getId(),
-                BigDecimal.valueOf(plan.getTargetKcal()), BigDecimal.valueOf(plan.getTargetProteinG()), BigDecimal.valueOf(plan.getTargetCarbG()), BigDecimal.valueOf(plan.getTargetFatG()),
-                BigDecimal.valueOf(plan.getActualKcal()), BigDecimal.valueOf(plan.getActualProteinG()), BigDecimal.valueOf(plan.getActualCarbG()), BigDecimal.valueOf(plan.getActualFatG()),
-                meals,
-                shoppingList,days
+                row.get(MEAL_PLAN.ID),
+                BigDecimal.valueOf(row.get(MEAL_PLAN.TARGET_KCAL)), BigDecimal.valueOf(row.get(MEAL_PLAN.TARGET_PROTEIN_G)), BigDecimal.valueOf(row.get(MEAL_PLAN.TARGET_CARB_G)), BigDecimal.valueOf(row.get(MEAL_PLAN.TARGET_FAT_G)),
+                BigDecimal.valueOf(row.get(MEAL_PLAN.ACTUAL_KCAL)), BigDecimal.valueOf(row.get(MEAL_PLAN.ACTUAL_PROTEIN_G)), BigDecimal.valueOf(row.get(MEAL_PLAN.ACTUAL_CARB_G)), BigDecimal.valueOf(row.get(MEAL_PLAN.ACTUAL_FAT_G)),
+                row.get(meals),
+                row.get(items),
+                row.get(days)
         );
     }
+
+    /**
+     * Orders meal slots within a day as breakfast, lunch, dinner.
+     */
+    private static Field<Integer> slotOrder() {
+        return case_(MEAL_PLAN_RECIPE.MEAL_SLOT)
+                .when("breakfast", 0)
+                .when("lunch", 1)
+                .otherwise(2);
+    }
+
     /**
-     * Returns a list of all meal plans for a user in descending order of creation.
+     * Returns one page of a user's meal plans in descending order of creation.
+     * <p>
+     * Uses keyset pagination on {@code (created_at, id)}: the cursor encodes the last row of the
+     * previous page, so every page is a single seek on {@code meal_plan_user_created_idx} no matter
+     * how deep the client pages.
      *
      * @param userId The user ID.
-     * @return List of {@link MealPlanSummaryDTO} entries.
+     * @param cursor The continuation token from the previous page, or null for the first page.
+     * @param limit  Maximum number of plans to return (clamped to 1..{@value #MAX_PAGE_SIZE}).
+     * @return The page of {@link MealPlanSummaryDTO} entries and the cursor for the next page.
+     * @throws BadRequestException If the cursor is malformed.
      */
-    public List<MealPlanSummaryDTO> getUserPlans(long userId) {
-        return db.select(
+    public MealPlanPageDTO getUserPlans(long userId, String cursor, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        var page = db.select(
                         MEAL_PLAN.ID,
                         MEAL_PLAN.TARGET_KCAL,
                         MEAL_PLAN.ACTUAL_KCAL,
@@ -386,14 +621,49 @@ public class MealPlanService {
                 )
                 .from(MEAL_PLAN)
                 .where(MEAL_PLAN.USER_ID.eq(userId))
-                .orderBy(MEAL_PLAN.CREATED_AT.desc())
-                .fetch()
+                .and(afterCursor(cursor))
+                .orderBy(MEAL_PLAN.CREATED_AT.desc(), MEAL_PLAN.ID.desc())
+                .limit(size + 1)
+                .fetch();
+
+        String next = null;
+        if (page.size() > size) {
+            var last = page.get(size - 1);
+            next = encodeCursor(last.get(MEAL_PLAN.CREATED_AT), last.get(MEAL_PLAN.ID));
+        }
+        List<MealPlanSummaryDTO> items = page.stream()
+                .limit(size)
                 .map(r -> new MealPlanSummaryDTO(
                         r.get(MEAL_PLAN.ID),
                         BigDecimal.valueOf(r.get(MEAL_PLAN.TARGET_KCAL)),
                         BigDecimal.valueOf(r.get(MEAL_PLAN.ACTUAL_KCAL)),
                         r.get(MEAL_PLAN.CREATED_AT).toString()
-                ));
+                ))
+                .toList();
+        return new MealPlanPageDTO(items, next);
+    }
+
+    static String encodeCursor(LocalDateTime createdAt, long id) {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // (created_at, id) < (cursor) as a row comparison, which Postgres answers from the index
+    private static Condition afterCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return noCondition();
+        }
+        LocalDateTime createdAt;
+        long id;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.lastIndexOf('|');
+            createdAt = LocalDateTime.parse(raw.substring(0, sep));
+            id = Long.parseLong(raw.substring(sep + 1));
+        } catch (RuntimeException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+        return row(MEAL_PLAN.CREATED_AT, MEAL_PLAN.ID).lt(createdAt, id);
     }
     /**
      * Deletes a meal plan and all associated data (recipes, shopping list items, etc.).
@@ -437,7 +707,7 @@ public class MealPlanService {
         Long latestPlanId = db.select(MEAL_PLAN.ID)
                 .from(MEAL_PLAN)
                 .where(MEAL_PLAN.USER_ID.eq(userId))
-                .orderBy(MEAL_PLAN.CREATED_AT.desc())
+                .orderBy(MEAL_PLAN.CREATED_AT.desc(), MEAL_PLAN.ID.desc())
                 .limit(1)
                 .fetchOneInto(Long.class);
 
@@ -453,6 +723,7 @@ public class MealPlanService {
      * @param planId The plan to regenerate.
      * @return The newly created plan.
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public MealPlanDetailsDTO regenerate(Long userId, Long planId){
         MealPlanDetailsDTO plan = getPlanById(userId, planId);
         long newPlanId = createPlan(userId,plan.targetKcal().intValue()
@@ -463,16 +734,191 @@ public class MealPlanService {
         return getPlanById(userId, newPlanId);
     }
     /**
-     * Converts string values like "110 kcal" or "20 g" into numeric {@link BigDecimal}.
+     * Replaces the recipe of a single meal slot, keeping the rest of the plan.
+     * <p>
+     * Only the new recipe is fetched (without a transaction), then one short transaction swaps
+     * the slot, applies the difference between the old and the new recipe's ingredients to the
+     * shopping list, and shifts the plan's actual macros by the difference of the two recipes.
      *
-     * @param input Raw string from Spoonacular widget.
-     * @return Parsed numeric value or null if parsing fails.
+     * @param userId   The user ID.
+     * @param planId   The plan ID.
+     * @param dayIndex The zero-based day of the slot.
+     * @param mealSlot The slot: breakfast, lunch or dinner.
+     * @param recipeId The replacement recipe, or null to pick the catalog recipe whose calories
+     *                 are closest to the current one.
+     * @return The updated plan.
+     * @throws NotFoundException     If the plan or slot does not exist, or no replacement is available.
+     * @throws BadRequestException   If the slot name is invalid.
+     * @throws IllegalStateException If the slot was swapped concurrently (409).
      */
-    private BigDecimal parse(String input) {
-        try {
-            return new BigDecimal(input.replaceAll("[^\\d.]", ""));
-        } catch (Exception e) {
-            return null;
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public MealPlanDetailsDTO swapSlot(long userId, long planId, int dayIndex, String mealSlot, Long recipeId) {
+        if (!MEAL_SLOTS.contains(mealSlot)) {
+            throw new BadRequestException("Meal slot must be one of " + MEAL_SLOTS);
+        }
+        var slot = db.select(MEAL_PLAN_RECIPE.RECIPE_ID, RECIPE.CALORIES, MEAL_PLAN.TARGET_KCAL)
+                .from(MEAL_PLAN_RECIPE)
+                .join(MEAL_PLAN).on(MEAL_PLAN.ID.eq(MEAL_PLAN_RECIPE.MEAL_PLAN_ID))
+                .join(RECIPE).on(RECIPE.ID.eq(MEAL_PLAN_RECIPE.RECIPE_ID))
+                .where(MEAL_PLAN.ID.eq(planId).and(MEAL_PLAN.USER_ID.eq(userId)))
+                .and(MEAL_PLAN_RECIPE.DAY_INDEX.eq((short) dayIndex))
+                .and(MEAL_PLAN_RECIPE.MEAL_SLOT.eq(mealSlot))
+                .fetchOne();
+        if (slot == null) throw new NotFoundException("Meal slot not found or not accessible");
+
+        long oldRecipeId = slot.value1();
+        long newRecipeId = recipeId != null ? recipeId : closestCatalogRecipe(planId,
+                slot.value2() != null ? slot.value2() : BigDecimal.valueOf(slot.value3() / 3));
+        if (newRecipeId == oldRecipeId) {
+            return getPlanById(userId, planId);
+        }
+
+        /* ---------- network phase (no transaction) ---------- */
+        RecipeFetcher.ResolvedMeal replacement = fetcher.fetchOne(newRecipeId);
+
+        /* ---------- write phase (one short transaction) ---------- */
+        return tx.execute(status -> {
+            upsertRecipes(List.of(replacement));
+            upsertIngredients(List.of(replacement));
+
+            // the slot was read outside this transaction: only swap it if it still holds the old recipe
+            int swapped = db.update(MEAL_PLAN_RECIPE)
+                    .set(MEAL_PLAN_RECIPE.RECIPE_ID, newRecipeId)
+                    .where(MEAL_PLAN_RECIPE.MEAL_PLAN_ID.eq(planId))
+                    .and(MEAL_PLAN_RECIPE.DAY_INDEX.eq((short) dayIndex))
+                    .and(MEAL_PLAN_RECIPE.MEAL_SLOT.eq(mealSlot))
+                    .and(MEAL_PLAN_RECIPE.RECIPE_ID.eq(oldRecipeId))
+                    .execute();
+            if (swapped != 1) {
+                throw new IllegalStateException("Meal slot was changed in the meantime, reload the plan and try again");
+            }
+
+            updateShoppingList(planId, oldRecipeId, newRecipeId);
+            updateActualMacros(planId, oldRecipeId, newRecipeId);
+            return rebuildSnapshot(planId);
+        });
+    }
+
+    /**
+     * Picks the catalog recipe with known macros whose calories are closest to the given value,
+     * skipping recipes already used in the plan.
+     */
+    private long closestCatalogRecipe(long planId, BigDecimal calories) {
+        return db.select(RECIPE.ID)
+                .from(RECIPE)
+                .where(RECIPE.CALORIES.isNotNull())
+                .and(RECIPE.ID.notIn(select(MEAL_PLAN_RECIPE.RECIPE_ID)
+                        .from(MEAL_PLAN_RECIPE)
+                        .where(MEAL_PLAN_RECIPE.MEAL_PLAN_ID.eq(planId))))
+                .orderBy(abs(RECIPE.CALORIES.minus(calories)), RECIPE.ID)
+                .limit(1)
+                .fetchOptional(RECIPE.ID)
+                .orElseThrow(() -> new NotFoundException("No alternative recipe available in the catalog"));
+    }
+
+    /**
+     * Applies a slot swap to the plan's shopping list: the old recipe's ingredients are
+     * subtracted and the new recipe's added, per ingredient and canonical unit. Rows of other
+     * ingredients are not touched; rows that drop to zero are removed.
+     */
+    private void updateShoppingList(long planId, long oldRecipeId, long newRecipeId) {
+        Long listId = db.select(SHOPPING_LIST.ID)
+                .from(SHOPPING_LIST)
+                .where(SHOPPING_LIST.MEAL_PLAN_ID.eq(planId))
+                .fetchOne(SHOPPING_LIST.ID);
+        if (listId == null) {
+            buildShoppingList(planId);
+            return;
+        }
+
+        var ingredients = db.select(
+                        RECIPE_INGREDIENT.RECIPE_ID,
+                        RECIPE_INGREDIENT.INGREDIENT_ID,
+                        INGREDIENT.NAME,
+                        RECIPE_INGREDIENT.QUANTITY_G,
+                        RECIPE_INGREDIENT.UNIT
+                )
+                .from(RECIPE_INGREDIENT)
+                .join(INGREDIENT).on(INGREDIENT.ID.eq(RECIPE_INGREDIENT.INGREDIENT_ID))
+                .where(RECIPE_INGREDIENT.RECIPE_ID.in(oldRecipeId, newRecipeId))
+                .fetch();
+
+        Map<Long, Map<String, BigDecimal>> deltas = new LinkedHashMap<>();
+        for (var record : ingredients) {
+            UnitConverter.Quantity q = units.toCanonical(
+                    record.get(INGREDIENT.NAME),
+                    record.get(RECIPE_INGREDIENT.QUANTITY_G),
+                    record.get(RECIPE_INGREDIENT.UNIT));
+            BigDecimal amount = record.get(RECIPE_INGREDIENT.RECIPE_ID) == oldRecipeId ? q.amount().negate() : q.amount();
+            deltas.computeIfAbsent(record.get(RECIPE_INGREDIENT.INGREDIENT_ID), id -> new LinkedHashMap<>())
+                    .merge(q.unit(), amount, BigDecimal::add);
         }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        var items = db.insertInto(SHOPPING_LIST_ITEM,
+                SHOPPING_LIST_ITEM.SHOPPING_LIST_ID,
+                SHOPPING_LIST_ITEM.INGREDIENT_ID,
+                SHOPPING_LIST_ITEM.AMOUNT,
+                SHOPPING_LIST_ITEM.UNIT);
+        for (var ingredient : deltas.entrySet()) {
+            for (var amount : ingredient.getValue().entrySet()) {
+                items = items.values(listId, ingredient.getKey(), amount.getValue(), amount.getKey());
+            }
+        }
+        items.onConflict(SHOPPING_LIST_ITEM.SHOPPING_LIST_ID, SHOPPING_LIST_ITEM.INGREDIENT_ID, SHOPPING_LIST_ITEM.UNIT)
+                .doUpdate()
+                .set(SHOPPING_LIST_ITEM.AMOUNT, SHOPPING_LIST_ITEM.AMOUNT.plus(excluded(SHOPPING_LIST_ITEM.AMOUNT)))
+                .execute();
+
+        db.deleteFrom(SHOPPING_LIST_ITEM)
+                .where(SHOPPING_LIST_ITEM.SHOPPING_LIST_ID.eq(listId))
+                .and(SHOPPING_LIST_ITEM.INGREDIENT_ID.in(deltas.keySet()))
+                .and(SHOPPING_LIST_ITEM.AMOUNT.le(BigDecimal.ZERO))
+                .execute();
+    }
+
+    /**
+     * Shifts the plan's daily actual macros by the difference between the new and the old
+     * recipe, spread over the plan's days. Macros that either recipe lacks are left unchanged.
+     * Also bumps {@code updated_at}, since the slot change itself fires no trigger.
+     */
+    private void updateActualMacros(long planId, long oldRecipeId, long newRecipeId) {
+        var macros = db.select(RECIPE.ID, RECIPE.CALORIES, RECIPE.PROTEIN, RECIPE.CARBOHYDRATES, RECIPE.FAT)
+                .from(RECIPE)
+                .where(RECIPE.ID.in(oldRecipeId, newRecipeId))
+                .fetchMap(RECIPE.ID);
+        var oldMacros = macros.get(oldRecipeId);
+        var newMacros = macros.get(newRecipeId);
+        Integer days = db.select(max(MEAL_PLAN_RECIPE.DAY_INDEX).cast(Integer.class).plus(1))
+                .from(MEAL_PLAN_RECIPE)
+                .where(MEAL_PLAN_RECIPE.MEAL_PLAN_ID.eq(planId))
+                .fetchOne(0, Integer.class);
+        int perDay = days != null && days > 0 ? days : 1;
+
+        db.update(MEAL_PLAN)
+                .set(MEAL_PLAN.ACTUAL_KCAL, shifted(MEAL_PLAN.ACTUAL_KCAL, oldMacros.get(RECIPE.CALORIES), newMacros.get(RECIPE.CALORIES), perDay))
+                .set(MEAL_PLAN.ACTUAL_PROTEIN_G, shifted(MEAL_PLAN.ACTUAL_PROTEIN_G, oldMacros.get(RECIPE.PROTEIN), newMacros.get(RECIPE.PROTEIN), perDay))
+                .set(MEAL_PLAN.ACTUAL_CARB_G, shifted(MEAL_PLAN.ACTUAL_CARB_G, oldMacros.get(RECIPE.CARBOHYDRATES), newMacros.get(RECIPE.CARBOHYDRATES), perDay))
+                .set(MEAL_PLAN.ACTUAL_FAT_G, shifted(MEAL_PLAN.ACTUAL_FAT_G, oldMacros.get(RECIPE.FAT), newMacros.get(RECIPE.FAT), perDay))
+                .set(MEAL_PLAN.UPDATED_AT, currentLocalDateTime())
+                .where(MEAL_PLAN.ID.eq(planId))
+                .execute();
     }
+
+    private static Field<Integer> shifted(Field<Integer> actual, BigDecimal oldValue, BigDecimal newValue, int days) {
+        if (oldValue == null || newValue == null) {
+            return actual;
+        }
+        int delta = newValue.subtract(oldValue)
+                .divide(BigDecimal.valueOf(days), 0, RoundingMode.HALF_UP)
+                .intValue();
+        return actual.plus(delta);
+    }
+
+    /**
+     * Daily calories and macros of a plan, in kcal and grams.
+     */
+    private record Macros(int kcal, int protein, int carb, int fat) { }
 }
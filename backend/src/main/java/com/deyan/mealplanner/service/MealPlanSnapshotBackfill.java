@@ -0,0 +1,84 @@
+package com.deyan.mealplanner.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jooq.DSLContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+import static com.deyan.mealplanner.jooq.tables.MealPlan.MEAL_PLAN;
+
+/**
+ * Builds the missing detail snapshots of existing meal plans after startup.
+ * <p>
+ * Runs once on a background thread, walking plans without a snapshot in ID order and in
+ * batches of {@code mealplanner.snapshots.backfill-batch-size}. A plan that fails is logged
+ * and skipped; it will be rebuilt on its next read instead.
+ */
+@Slf4j
+@Component
+public class MealPlanSnapshotBackfill {
+
+    private final MealPlanService mealPlanService;
+    private final DSLContext db;
+    private final boolean enabled;
+    private final int batchSize;
+
+    public MealPlanSnapshotBackfill(MealPlanService mealPlanService,
+                                    DSLContext db,
+                                    @Value("${mealplanner.snapshots.backfill-on-startup:true}") boolean enabled,
+                                    @Value("${mealplanner.snapshots.backfill-batch-size:100}") int batchSize) {
+        this.mealPlanService = mealPlanService;
+        this.db = db;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        Thread worker = new Thread(this::backfill, "plan-snapshot-backfill");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Rebuilds every missing snapshot.
+     *
+     * @return The number of snapshots written.
+     */
+    int backfill() {
+        long lastId = 0;
+        int written = 0;
+        while (true) {
+            List<Long> ids = db.select(MEAL_PLAN.ID)
+                    .from(MEAL_PLAN)
+                    .where(MEAL_PLAN.DETAILS_SNAPSHOT.isNull())
+                    .and(MEAL_PLAN.ID.gt(lastId))
+                    .orderBy(MEAL_PLAN.ID)
+                    .limit(batchSize)
+                    .fetch(MEAL_PLAN.ID);
+            if (ids.isEmpty()) {
+                break;
+            }
+            for (Long id : ids) {
+                try {
+                    mealPlanService.rebuildSnapshot(id);
+                    written++;
+                } catch (RuntimeException e) {
+                    log.warn("Could not backfill snapshot of meal plan {}: {}", id, e.getMessage());
+                }
+            }
+            lastId = ids.get(ids.size() - 1);
+        }
+        if (written > 0) {
+            log.info("Backfilled {} meal plan snapshots", written);
+        }
+        return written;
+    }
+}
@@ -0,0 +1,128 @@
+package com.deyan.mealplanner.service;
+
+import com.deyan.mealplanner.service.AchievementService.Metric;
+import com.deyan.mealplanner.service.AchievementService.UserMetrics;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.jooq.DSLContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.deyan.mealplanner.jooq.tables.OutboxEvent.OUTBOX_EVENT;
+
+/**
+ * Processes the {@code outbox_event} table in the background.
+ * <p>
+ * Writers (e.g. a weight log) insert an event in the same transaction as their change and return
+ * without evaluating achievements. The dispatcher claims pending events in batches with
+ * {@code FOR UPDATE SKIP LOCKED}, evaluates all of a batch's achievements with one upsert and
+ * deletes the events in the same transaction. An event is therefore processed exactly once, or
+ * retried with its batch if processing fails.
+ * <p>
+ * Several instances can run side by side. Two of them may then hold events of the same user and
+ * commit in either order; the upsert keys progress on the event ID, so the newer event's values
+ * win either way (see {@link AchievementService#evaluate}).
+ */
+@Slf4j
+@Component
+public class OutboxDispatcher {
+
+    private static final TypeReference<Map<String, Integer>> PAYLOAD = new TypeReference<>() { };
+
+    private final DSLContext dsl;
+    private final TransactionTemplate tx;
+    private final AchievementService achievements;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+
+    /**
+     * Constructs the dispatcher.
+     *
+     * @param dsl          The JOOQ DSL context.
+     * @param txManager    Transaction manager; each batch is one transaction.
+     * @param achievements Evaluates the metric values carried by the events.
+     * @param objectMapper Reads event payloads.
+     * @param batchSize    Events claimed per transaction.
+     */
+    public OutboxDispatcher(DSLContext dsl, PlatformTransactionManager txManager, AchievementService achievements,
+                            ObjectMapper objectMapper,
+                            @Value("${mealplanner.outbox.batch-size:100}") int batchSize) {
+        this.dsl = dsl;
+        this.tx = new TransactionTemplate(txManager);
+        this.achievements = achievements;
+        this.objectMapper = objectMapper;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Processes batches until no unclaimed event is left.
+     *
+     * @return The number of events processed.
+     */
+    @Scheduled(fixedDelayString = "${mealplanner.outbox.poll-interval:PT1S}",
+            initialDelayString = "${mealplanner.outbox.poll-interval:PT1S}")
+    public int dispatch() {
+        int total = 0;
+        int processed;
+        do {
+            processed = tx.execute(status -> processBatch());
+            total += processed;
+        } while (processed == batchSize);
+        if (total > 0) {
+            log.debug("Processed {} outbox events", total);
+        }
+        return total;
+    }
+
+    private int processBatch() {
+        var events = dsl.select(OUTBOX_EVENT.ID, OUTBOX_EVENT.USER_ID, OUTBOX_EVENT.TYPE, OUTBOX_EVENT.PAYLOAD)
+                .from(OUTBOX_EVENT)
+                .orderBy(OUTBOX_EVENT.ID)
+                .limit(batchSize)
+                .forUpdate()
+                .skipLocked()
+                .fetch();
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        // metric values are absolute: per user the newest event gives the progress, and any
+        // event may have reached a target
+        Map<Long, UserMetrics> metrics = new HashMap<>();
+        for (var event : events) {
+            UserMetrics user = metrics.compute(event.value2(), (id, m) -> new UserMetrics(event.value1(),
+                    m != null ? m.latest() : new EnumMap<>(Metric.class),
+                    m != null ? m.peak() : new EnumMap<>(Metric.class)));
+            try {
+                objectMapper.readValue(event.value4().data(), PAYLOAD).forEach((metric, value) -> {
+                    try {
+                        Metric key = Metric.valueOf(metric);
+                        user.latest().put(key, value);
+                        user.peak().merge(key, value, Math::max);
+                    } catch (IllegalArgumentException e) {
+                        log.warn("Outbox event {} ({}) has unknown metric '{}', ignoring it",
+                                event.value1(), event.value3(), metric);
+                    }
+                });
+            } catch (JsonProcessingException e) {
+                log.warn("Outbox event {} ({}) has an unreadable payload, dropping it: {}",
+                        event.value1(), event.value3(), e.getMessage());
+            }
+        }
+        achievements.evaluate(metrics);
+
+        List<Long> ids = events.map(e -> e.value1());
+        dsl.deleteFrom(OUTBOX_EVENT).where(OUTBOX_EVENT.ID.in(ids)).execute();
+        return events.size();
+    }
+}
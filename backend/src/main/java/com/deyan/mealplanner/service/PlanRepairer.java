@@ -0,0 +1,199 @@
+package com.deyan.mealplanner.service;
+
+import com.deyan.mealplanner.service.LocalMealPlanGenerator.Target;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Finds the fewest meal swaps that bring the days of a plan back within the macro tolerances.
+ * <p>
+ * Replacements come from the {@link RecipeCatalogIndex}, so no external call is needed. For each
+ * day that misses its targets, every subset of one slot, then two, then three slots is tried:
+ * the macros the replaced slots would have to supply are looked up with nearest-neighbour
+ * queries on the index, and the first combination that meets the targets wins. The whole
+ * search is bounded by {@code mealplanner.repair.time-budget}; days not repaired in time
+ * are left as they are.
+ */
+@Slf4j
+@Component
+public class PlanRepairer {
+
+    private static final int SLOTS_PER_DAY = 3;
+    private static final int[][][] SLOT_SUBSETS = {
+            {{0}, {1}, {2}},
+            {{0, 1}, {0, 2}, {1, 2}},
+            {{0, 1, 2}}
+    };
+
+    private final RecipeCatalogIndex index;
+    private final Duration timeBudget;
+    private final int neighbours;
+
+    /**
+     * Constructs the repairer.
+     *
+     * @param index      The catalog replacements are taken from.
+     * @param timeBudget Maximum time spent searching per plan.
+     * @param neighbours Replacement candidates considered per replaced slot.
+     */
+    public PlanRepairer(RecipeCatalogIndex index,
+                        @Value("${mealplanner.repair.time-budget:50ms}") Duration timeBudget,
+                        @Value("${mealplanner.repair.neighbours:20}") int neighbours) {
+        this.index = index;
+        this.timeBudget = timeBudget;
+        this.neighbours = Math.max(1, neighbours);
+    }
+
+    /**
+     * Plans the swaps for a plan.
+     *
+     * @param days    Per day, the current breakfast, lunch and dinner with their macros.
+     * @param target  The daily targets.
+     * @param exclude Recipe IDs that must not be used as replacements (e.g. already in the plan).
+     * @return The swaps to apply, at most one per slot; empty if nothing could be improved.
+     */
+    public List<Swap> repair(List<Candidate[]> days, Target target, Set<Long> exclude) {
+        return repair(index.snapshot(), days, target, new HashSet<>(exclude),
+                System.nanoTime() + timeBudget.toNanos(), neighbours);
+    }
+
+    static List<Swap> repair(RecipeCatalogIndex.Snapshot catalog, List<Candidate[]> days, Target target,
+                             Set<Long> exclude, long deadline, int neighbours) {
+        List<Swap> swaps = new ArrayList<>();
+        for (int day = 0; day < days.size(); day++) {
+            Candidate[] meals = days.get(day);
+            if (isMet(target, meals)) {
+                continue;
+            }
+            List<Swap> fix = repairDay(catalog, day, meals, target, exclude, deadline, neighbours);
+            if (fix == null) {
+                log.debug("Day {} could not be repaired within the budget", day);
+                continue;
+            }
+            swaps.addAll(fix);
+            fix.forEach(s -> exclude.add(s.recipeId()));
+        }
+        return swaps;
+    }
+
+    /**
+     * Tries one, two and three swaps in that order.
+     *
+     * @return The swaps of the first combination meeting the targets, or null.
+     */
+    private static List<Swap> repairDay(RecipeCatalogIndex.Snapshot catalog, int day, Candidate[] meals, Target target,
+                                        Set<Long> exclude, long deadline, int neighbours) {
+        for (int[][] subsets : SLOT_SUBSETS) {
+            for (int[] slots : subsets) {
+                if (System.nanoTime() > deadline) {
+                    return null;
+                }
+                Candidate[] trial = meals.clone();
+                if (fill(catalog, trial, slots, 0, target, exclude, deadline, neighbours)) {
+                    List<Swap> swaps = new ArrayList<>();
+                    for (int slot : slots) {
+                        swaps.add(new Swap(day, slot, trial[slot].id()));
+                    }
+                    return swaps;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Depth-first assignment of {@code slots[depth..]}: each slot gets one of the recipes nearest
+     * to an even share of what the remaining slots still have to supply.
+     */
+    private static boolean fill(RecipeCatalogIndex.Snapshot catalog, Candidate[] trial, int[] slots, int depth,
+                                Target target, Set<Long> exclude, long deadline, int neighbours) {
+        if (depth == slots.length) {
+            return isMet(target, trial);
+        }
+        if (System.nanoTime() > deadline) {
+            return false;
+        }
+        int open = slots.length - depth;
+        double kcal = target.kcal(), protein = 0, carb = 0, fat = 0;
+        for (int s = 0; s < SLOTS_PER_DAY; s++) {
+            if (!isOpen(slots, depth, s)) {
+                kcal -= trial[s].kcal();
+                protein += trial[s].protein();
+                carb += trial[s].carb();
+                fat += trial[s].fat();
+            }
+        }
+        // an unconstrained macro is aimed at what the replaced meals supplied
+        double wantProtein = residual(target.protein(), protein, trial, slots, depth, Candidate::protein);
+        double wantCarb = residual(target.carb(), carb, trial, slots, depth, Candidate::carb);
+        double wantFat = residual(target.fat(), fat, trial, slots, depth, Candidate::fat);
+
+        int slot = slots[depth];
+        Candidate original = trial[slot];
+        for (int i : catalog.nearest(kcal / open, wantProtein / open, wantCarb / open, wantFat / open, neighbours)) {
+            long id = catalog.id(i);
+            if (exclude.contains(id) || isUsed(trial, id)) continue;
+            trial[slot] = new Candidate(id, catalog.kcal(i), catalog.protein(i), catalog.carb(i), catalog.fat(i));
+            if (fill(catalog, trial, slots, depth + 1, target, exclude, deadline, neighbours)) {
+                return true;
+            }
+        }
+        trial[slot] = original;
+        return false;
+    }
+
+    private static double residual(Integer target, double fixed, Candidate[] trial, int[] slots, int depth,
+                                   ToDoubleFunction<Candidate> macro) {
+        if (target != null) {
+            return target - fixed;
+        }
+        double supplied = 0;
+        for (int d = depth; d < slots.length; d++) {
+            supplied += macro.applyAsDouble(trial[slots[d]]);
+        }
+        return supplied;
+    }
+
+    static boolean isMet(Target target, Candidate[] meals) {
+        double k = 0, p = 0, c = 0, f = 0;
+        for (Candidate meal : meals) {
+            k += meal.kcal();
+            p += meal.protein();
+            c += meal.carb();
+            f += meal.fat();
+        }
+        return target.isMet(k, p, c, f);
+    }
+
+    private static boolean isOpen(int[] slots, int depth, int slot) {
+        for (int d = depth; d < slots.length; d++) {
+            if (slots[d] == slot) return true;
+        }
+        return false;
+    }
+
+    private static boolean isUsed(Candidate[] trial, long id) {
+        for (Candidate c : trial) {
+            if (c.id() == id) return true;
+        }
+        return false;
+    }
+
+    /**
+     * A meal of the plan or a catalog recipe, with its macros per serving.
+     */
+    record Candidate(long id, double kcal, double protein, double carb, double fat) { }
+
+    /**
+     * Replace the recipe in slot {@code slot} (0 breakfast, 1 lunch, 2 dinner) of day {@code day}.
+     */
+    public record Swap(int day, int slot, long recipeId) { }
+}
@@ -0,0 +1,222 @@
+package com.deyan.mealplanner.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jooq.DSLContext;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+import static com.deyan.mealplanner.jooq.tables.Recipe.RECIPE;
+
+/**
+ * In-memory index of the fresh catalog recipes and their macros, for nutrition queries that
+ * would otherwise scan the {@code recipe} table.
+ * <p>
+ * Recipe IDs and macros are held in parallel primitive arrays sorted by calories, so a calorie
+ * range is a binary search and the remaining macro filters are a tight scan over the slice.
+ * The arrays are rebuilt from the database after startup and every
+ * {@code mealplanner.catalog-index.refresh-interval}; readers always see a complete
+ * {@link Snapshot}, never a half-built one.
+ */
+@Slf4j
+@Component
+public class RecipeCatalogIndex {
+
+    private final DSLContext dsl;
+    private final RecipeService recipes;
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    public RecipeCatalogIndex(DSLContext dsl, RecipeService recipes) {
+        this.dsl = dsl;
+        this.recipes = recipes;
+    }
+
+    /**
+     * Reloads the index from the catalog. Runs after startup and then periodically.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${mealplanner.catalog-index.refresh-interval:PT5M}",
+            initialDelayString = "${mealplanner.catalog-index.refresh-interval:PT5M}")
+    public void refresh() {
+        long start = System.nanoTime();
+        var rows = dsl.select(RECIPE.ID, RECIPE.CALORIES, RECIPE.PROTEIN, RECIPE.CARBOHYDRATES, RECIPE.FAT)
+                .from(RECIPE)
+                .where(recipes.isFresh())
+                .and(RECIPE.PROTEIN.isNotNull())
+                .and(RECIPE.CARBOHYDRATES.isNotNull())
+                .and(RECIPE.FAT.isNotNull())
+                .orderBy(RECIPE.CALORIES, RECIPE.ID)
+                .fetch();
+
+        int n = rows.size();
+        long[] ids = new long[n];
+        double[] kcal = new double[n], protein = new double[n], carb = new double[n], fat = new double[n];
+        for (int i = 0; i < n; i++) {
+            var r = rows.get(i);
+            ids[i] = r.value1();
+            kcal[i] = r.value2().doubleValue();
+            protein[i] = r.value3().doubleValue();
+            carb[i] = r.value4().doubleValue();
+            fat[i] = r.value5().doubleValue();
+        }
+        snapshot = new Snapshot(ids, kcal, protein, carb, fat);
+        log.debug("Recipe catalog index refreshed: {} recipes in {} ms", n, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * @return The current, immutable state of the index.
+     */
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * An inclusive interval on one macro; {@link #ANY} does not constrain it.
+     */
+    public record Range(double min, double max) {
+        public static final Range ANY = new Range(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+
+        public static Range between(double min, double max) {
+            return new Range(min, max);
+        }
+
+        public static Range atLeast(double min) {
+            return new Range(min, Double.POSITIVE_INFINITY);
+        }
+
+        public static Range atMost(double max) {
+            return new Range(Double.NEGATIVE_INFINITY, max);
+        }
+
+        boolean contains(double value) {
+            return value >= min && value <= max;
+        }
+    }
+
+    /**
+     * Catalog recipes in ascending order of calories. Positions are only meaningful within
+     * the same snapshot.
+     */
+    public static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(new long[0], new double[0], new double[0], new double[0], new double[0]);
+
+        private final long[] ids;
+        private final double[] kcal;
+        private final double[] protein;
+        private final double[] carb;
+        private final double[] fat;
+
+        /**
+         * Builds a snapshot from parallel arrays, which must already be sorted by {@code kcal}.
+         */
+        Snapshot(long[] ids, double[] kcal, double[] protein, double[] carb, double[] fat) {
+            this.ids = ids;
+            this.kcal = kcal;
+            this.protein = protein;
+            this.carb = carb;
+            this.fat = fat;
+        }
+
+        public int size() { return ids.length; }
+        public long id(int i) { return ids[i]; }
+        public double kcal(int i) { return kcal[i]; }
+        public double protein(int i) { return protein[i]; }
+        public double carb(int i) { return carb[i]; }
+        public double fat(int i) { return fat[i]; }
+
+        /**
+         * Finds the recipes within all four ranges.
+         *
+         * @return Their positions, in ascending order of calories.
+         */
+        public int[] find(Range kcalRange, Range proteinRange, Range carbRange, Range fatRange) {
+            int from = lowerBound(kcalRange.min());
+            int to = upperBound(kcalRange.max());
+            int[] out = new int[Math.max(0, to - from)];
+            int found = 0;
+            for (int i = from; i < to; i++) {
+                if (proteinRange.contains(protein[i]) && carbRange.contains(carb[i]) && fatRange.contains(fat[i])) {
+                    out[found++] = i;
+                }
+            }
+            return Arrays.copyOf(out, found);
+        }
+
+        /**
+         * Finds the {@code k} recipes closest to the given macros. Distances are Euclidean, with
+         * calories scaled by {@link MealPlanService#THRESHOLD_KCAL} and each macro by
+         * {@link MealPlanService#THRESHOLD_MACRO}, so one tolerance counts the same on every axis.
+         * The scan starts at the target's calories and walks outwards, stopping in each direction
+         * once the calorie difference alone exceeds the k-th best distance.
+         *
+         * @return Their positions, closest first.
+         */
+        public int[] nearest(double targetKcal, double targetProtein, double targetCarb, double targetFat, int k) {
+            int limit = Math.min(k, size());
+            if (limit <= 0) {
+                return new int[0];
+            }
+            int[] best = new int[limit];
+            double[] bestDistance = new double[limit];
+            int found = 0;
+
+            int up = lowerBound(targetKcal);
+            int down = up - 1;
+            while (up < size() || down >= 0) {
+                double worst = found < limit ? Double.POSITIVE_INFINITY : bestDistance[limit - 1];
+                double upGap = up < size() ? scaled(kcal[up] - targetKcal, MealPlanService.THRESHOLD_KCAL) : Double.POSITIVE_INFINITY;
+                double downGap = down >= 0 ? scaled(kcal[down] - targetKcal, MealPlanService.THRESHOLD_KCAL) : Double.POSITIVE_INFINITY;
+                if (Math.min(upGap, downGap) > worst) {
+                    break;
+                }
+                int i = upGap <= downGap ? up++ : down--;
+                double distance = scaled(kcal[i] - targetKcal, MealPlanService.THRESHOLD_KCAL)
+                        + scaled(protein[i] - targetProtein, MealPlanService.THRESHOLD_MACRO)
+                        + scaled(carb[i] - targetCarb, MealPlanService.THRESHOLD_MACRO)
+                        + scaled(fat[i] - targetFat, MealPlanService.THRESHOLD_MACRO);
+                if (distance >= worst) {
+                    continue;
+                }
+                // insertion into the sorted top-k
+                int pos = found < limit ? found++ : limit - 1;
+                while (pos > 0 && bestDistance[pos - 1] > distance) {
+                    best[pos] = best[pos - 1];
+                    bestDistance[pos] = bestDistance[pos - 1];
+                    pos--;
+                }
+                best[pos] = i;
+                bestDistance[pos] = distance;
+            }
+            return Arrays.copyOf(best, found);
+        }
+
+        private static double scaled(double delta, double tolerance) {
+            double d = delta / tolerance;
+            return d * d;
+        }
+
+        // first position with kcal >= value
+        private int lowerBound(double value) {
+            int lo = 0, hi = size();
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (kcal[mid] < value) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+
+        // first position with kcal > value
+        private int upperBound(double value) {
+            int lo = 0, hi = size();
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (kcal[mid] <= value) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+    }
+}
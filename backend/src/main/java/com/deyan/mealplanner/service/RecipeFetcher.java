@@ -0,0 +1,153 @@
+package com.deyan.mealplanner.service;
+
+import com.deyan.mealplanner.dto.MealPlanDTO;
+import com.deyan.mealplanner.dto.NutritionResponse;
+import com.deyan.mealplanner.dto.RecipeDetailsDTO;
+import com.deyan.mealplanner.service.interfaces.RecipeAPIAdapter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolves the recipes of a generated meal plan concurrently.
+ * <p>
+ * All recipes are first requested in one bulk call on the calling thread; it also reports
+ * which recipes already have their macros stored, and those meals are complete right away.
+ * Every other meal is completed (nutrition lookup, or the recipe itself when the bulk call
+ * missed it) on its own worker, with at most {@code mealplanner.recipe-fetch.concurrency}
+ * meals in flight at once. A meal that cannot be fetched is dropped instead of failing the
+ * whole plan.
+ */
+@Slf4j
+@Component
+public class RecipeFetcher {
+
+    private final RecipeAPIAdapter external;
+    private final int concurrency;
+
+    /**
+     * Constructs the fetcher.
+     *
+     * @param external    The external recipe API adapter.
+     * @param concurrency Maximum number of meals fetched at the same time.
+     */
+    public RecipeFetcher(RecipeAPIAdapter external,
+                         @Value("${mealplanner.recipe-fetch.concurrency:6}") int concurrency) {
+        this.external = external;
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     * Fetches the recipe and macros of every meal in parallel.
+     *
+     * @param meals The meals returned by the plan generator, in slot order.
+     * @return The successfully resolved meals, still in meal order. Each entry keeps the
+     *         position of its meal so callers can map it back to a day and slot.
+     */
+    public List<ResolvedMeal> fetchAll(List<MealPlanDTO.Meal> meals) {
+        RecipeAPIAdapter.RecipeBatch bulk = fetchBulk(meals);
+        List<ResolvedMeal> resolved = Flux.range(0, meals.size())
+                .flatMapSequential(i -> Mono.fromCallable(() -> resolve(i, meals.get(i), bulk))
+                                .subscribeOn(Schedulers.boundedElastic())
+                                .onErrorResume(ex -> {
+                                    log.warn("Skipping meal {} (recipe {}): {}",
+                                            i, meals.get(i).id(), ex.getMessage());
+                                    return Mono.empty();
+                                }),
+                        concurrency)
+                .collectList()
+                .block();
+
+        return resolved != null ? resolved : List.of();
+    }
+
+    /**
+     * Fetches a single recipe and its macros, e.g. to swap one slot of a plan.
+     *
+     * @param recipeId The recipe ID.
+     * @return The resolved recipe, with index 0.
+     */
+    public ResolvedMeal fetchOne(long recipeId) {
+        return complete(0, external.getRecipe(recipeId));
+    }
+
+    /**
+     * Requests the recipes of all meals in one call.
+     *
+     * @return The recipes found; empty if the bulk call failed, in which case every meal
+     *         falls back to a single-recipe request.
+     */
+    private RecipeAPIAdapter.RecipeBatch fetchBulk(List<MealPlanDTO.Meal> meals) {
+        try {
+            return external.getRecipeBatch(meals.stream().map(MealPlanDTO.Meal::id).toList());
+        } catch (RuntimeException ex) {
+            log.warn("Bulk recipe fetch failed, fetching one by one: {}", ex.getMessage());
+            return new RecipeAPIAdapter.RecipeBatch(Map.of(), Set.of());
+        }
+    }
+
+    /**
+     * Completes a single meal: its recipe (from the bulk result or a single request) followed
+     * by its nutrition lookup, unless the bulk call already reported the macros as known.
+     *
+     * @param index Position of the meal in the plan.
+     * @param meal  The meal to resolve.
+     * @param bulk  Recipes already fetched in bulk.
+     * @return The resolved meal.
+     */
+    private ResolvedMeal resolve(int index, MealPlanDTO.Meal meal, RecipeAPIAdapter.RecipeBatch bulk) {
+        RecipeDetailsDTO recipe = bulk.recipes().get(meal.id());
+        if (recipe == null) {
+            return complete(index, external.getRecipe(meal.id()));
+        }
+        if (bulk.nutritionKnown().contains(meal.id())) {
+            return new ResolvedMeal(index, recipe, recipe.nutrition());
+        }
+        return complete(index, recipe);
+    }
+
+    /**
+     * Looks up the macros of a recipe: when they are known, the recipe was served from the
+     * catalog and already carries them; otherwise they come from the nutrition widget.
+     */
+    private ResolvedMeal complete(int index, RecipeDetailsDTO recipe) {
+        RecipeAPIAdapter.NutritionLookup lookup = external.lookupNutrition(recipe.id());
+        if (lookup.known()) {
+            return new ResolvedMeal(index, recipe, recipe.nutrition());
+        }
+        NutritionResponse widget = lookup.widget();
+        return new ResolvedMeal(index, recipe, widget == null ? null : new RecipeDetailsDTO.Nutrition(
+                parse(widget.calories()), parse(widget.protein()), parse(widget.fat()), parse(widget.carbs())));
+    }
+
+    /**
+     * Converts string values like "110 kcal" or "20 g" into numeric {@link BigDecimal}.
+     *
+     * @param input Raw string from Spoonacular widget.
+     * @return Parsed numeric value or null if parsing fails.
+     */
+    private static BigDecimal parse(String input) {
+        try {
+            return new BigDecimal(input.replaceAll("[^\\d.]", ""));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * A meal whose recipe has been fetched.
+     *
+     * @param index  Position of the meal in the generated plan.
+     * @param recipe Full recipe details.
+     * @param macros The recipe's macros, from the catalog or the nutrition widget; null if unavailable.
+     */
+    public record ResolvedMeal(int index, RecipeDetailsDTO recipe, RecipeDetailsDTO.Nutrition macros) { }
+}
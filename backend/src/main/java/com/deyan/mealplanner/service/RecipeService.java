@@ -1,12 +1,23 @@
 package com.deyan.mealplanner.service;
 
 import com.deyan.mealplanner.exceptions.NotFoundException;
+import com.deyan.mealplanner.dto.PantryMatchDTO;
 import com.deyan.mealplanner.dto.RecipeDetailsDTO;
+import com.deyan.mealplanner.dto.ResourceVersion;
 import com.deyan.mealplanner.jooq.tables.records.RecipeRecord;
+import org.jooq.Condition;
 import org.jooq.DSLContext;
+import org.jooq.Result;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 import static com.deyan.mealplanner.jooq.tables.Ingredient.INGREDIENT;
 import static com.deyan.mealplanner.jooq.tables.Recipe.RECIPE;
@@ -16,14 +27,22 @@ import static com.deyan.mealplanner.jooq.tables.RecipeIngredient.RECIPE_INGREDIE
 public class RecipeService {
 
     private final DSLContext dsl;
+    private final Duration maxAge;
+    private final IngredientRecipeIndex ingredientIndex;
 
     /**
      * Constructs the service with a JOOQ DSL context.
      *
-     * @param dsl The JOOQ {@link DSLContext} used for querying.
+     * @param dsl           The JOOQ {@link DSLContext} used for querying.
+     * @param maxAgeDays    How long a recipe pulled from Spoonacular is served from the local catalog.
+     * @param ingredientIndex The ingredient-to-recipe index used for pantry matching.
      */
-    public RecipeService(DSLContext dsl) {
+    public RecipeService(DSLContext dsl,
+                         @Value("${mealplanner.catalog.recipe-max-age-days:30}") long maxAgeDays,
+                         IngredientRecipeIndex ingredientIndex) {
         this.dsl = dsl;
+        this.maxAge = Duration.ofDays(maxAgeDays);
+        this.ingredientIndex = ingredientIndex;
     }
 
     /**
@@ -41,8 +60,149 @@ public class RecipeService {
         if (recipe == null) {
             throw new NotFoundException("Recipe not found with ID: " + recipeId);
         }
+        return toDetails(recipe);
+    }
+
+    /**
+     * Returns the version of a recipe without loading it, for conditional GETs.
+     *
+     * @param recipeId The ID of the recipe.
+     * @return The recipe's version, derived from its ID and {@code fetched_at}.
+     * @throws NotFoundException If the recipe does not exist.
+     */
+    public ResourceVersion getRecipeVersion(Long recipeId) {
+        return dsl.select(RECIPE.FETCHED_AT)
+                .from(RECIPE)
+                .where(RECIPE.ID.eq(recipeId))
+                .fetchOptional(r -> ResourceVersion.of("recipe", recipeId, r.value1()))
+                .orElseThrow(() -> new NotFoundException("Recipe not found with ID: " + recipeId));
+    }
+
+    /**
+     * Ranks catalog recipes by how much of them can be cooked from the given pantry,
+     * using the in-memory {@link IngredientRecipeIndex}; only the titles of the
+     * returned recipes are read from the database.
+     *
+     * @param pantry      Ingredient IDs the user has.
+     * @param minCoverage Minimum share (0..1) of a recipe's ingredients that must be in the pantry.
+     * @param limit       Maximum number of recipes.
+     * @return The best matches, best first.
+     */
+    public List<PantryMatchDTO> findPantryMatches(Collection<Long> pantry, double minCoverage, int limit) {
+        List<IngredientRecipeIndex.Match> matches = ingredientIndex.rank(pantry, minCoverage, limit);
+        if (matches.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, String> titles = dsl.select(RECIPE.ID, RECIPE.NAME)
+                .from(RECIPE)
+                .where(RECIPE.ID.in(matches.stream().map(IngredientRecipeIndex.Match::recipeId).toList()))
+                .fetchMap(RECIPE.ID, RECIPE.NAME);
+        return matches.stream()
+                .map(m -> new PantryMatchDTO(m.recipeId(), titles.get(m.recipeId()),
+                        m.matched(), m.total(), m.coverage()))
+                .toList();
+    }
+
+    /**
+     * Looks a recipe up in the local catalog, returning it only if it is fresh
+     * (see {@link #isFresh()}).
+     *
+     * @param recipeId The ID of the recipe.
+     * @return The recipe details, or empty if unknown or stale.
+     */
+    public Optional<RecipeDetailsDTO> findFreshRecipe(Long recipeId) {
+        return dsl.selectFrom(RECIPE)
+                .where(RECIPE.ID.eq(recipeId))
+                .and(isFresh())
+                .fetchOptional()
+                .map(this::toDetails);
+    }
+
+    /**
+     * Bulk variant of {@link #findFreshRecipe}: two queries regardless of the number of IDs.
+     *
+     * @param recipeIds The IDs of the recipes.
+     * @return The fresh recipes found, keyed by ID.
+     */
+    public Map<Long, RecipeDetailsDTO> findFreshRecipes(Collection<Long> recipeIds) {
+        Result<RecipeRecord> recipes = dsl.selectFrom(RECIPE)
+                .where(RECIPE.ID.in(recipeIds))
+                .and(isFresh())
+                .fetch();
+        if (recipes.isEmpty()) {
+            return Map.of();
+        }
+
+        Map<Long, List<RecipeDetailsDTO.ExtendedIngredient>> ingredients = dsl
+                .select(RECIPE_INGREDIENT.RECIPE_ID,
+                        RECIPE_INGREDIENT.INGREDIENT_ID,
+                        INGREDIENT.NAME,
+                        RECIPE_INGREDIENT.QUANTITY_G,
+                        RECIPE_INGREDIENT.UNIT)
+                .from(RECIPE_INGREDIENT)
+                .join(INGREDIENT).on(RECIPE_INGREDIENT.INGREDIENT_ID.eq(INGREDIENT.ID))
+                .where(RECIPE_INGREDIENT.RECIPE_ID.in(recipes.map(RecipeRecord::getId)))
+                .fetchGroups(RECIPE_INGREDIENT.RECIPE_ID, r -> new RecipeDetailsDTO.ExtendedIngredient(
+                        r.get(RECIPE_INGREDIENT.INGREDIENT_ID),
+                        r.get(INGREDIENT.NAME),
+                        r.get(RECIPE_INGREDIENT.QUANTITY_G),
+                        r.get(RECIPE_INGREDIENT.UNIT)));
+
+        Map<Long, RecipeDetailsDTO> out = new HashMap<>();
+        for (RecipeRecord recipe : recipes) {
+            out.put(recipe.getId(), toDetails(recipe, ingredients.getOrDefault(recipe.getId(), List.of())));
+        }
+        return out;
+    }
 
-        List<RecipeDetailsDTO.ExtendedIngredient> ingredients = dsl
+    /**
+     * Looks up only the macros of a fresh catalog recipe.
+     *
+     * @param recipeId The ID of the recipe.
+     * @return The stored nutrition, or empty if the recipe is unknown or stale.
+     */
+    public Optional<RecipeDetailsDTO.Nutrition> findFreshNutrition(Long recipeId) {
+        return dsl.select(RECIPE.CALORIES, RECIPE.PROTEIN, RECIPE.FAT, RECIPE.CARBOHYDRATES)
+                .from(RECIPE)
+                .where(RECIPE.ID.eq(recipeId))
+                .and(isFresh())
+                .fetchOptional(r -> new RecipeDetailsDTO.Nutrition(
+                        r.get(RECIPE.CALORIES),
+                        r.get(RECIPE.PROTEIN),
+                        r.get(RECIPE.FAT),
+                        r.get(RECIPE.CARBOHYDRATES)));
+    }
+
+    /**
+     * A catalog recipe is fresh when it was pulled from Spoonacular within the configured
+     * max age and its macros are known.
+     *
+     * @return The freshness condition on the {@code recipe} table.
+     */
+    public Condition isFresh() {
+        return RECIPE.FETCHED_AT.ge(LocalDateTime.now().minus(maxAge))
+                .and(RECIPE.CALORIES.isNotNull());
+    }
+
+    /**
+     * @return The negation of {@link #isFresh()}; rows Spoonacular data may overwrite.
+     */
+    public Condition isStale() {
+        return isFresh().not();
+    }
+
+    /**
+     * Loads the ingredients of a recipe record and maps both into a {@link RecipeDetailsDTO}.
+     *
+     * @param recipe The recipe record.
+     * @return The full recipe details.
+     */
+    private RecipeDetailsDTO toDetails(RecipeRecord recipe) {
+        return toDetails(recipe, loadIngredients(recipe.getId()));
+    }
+
+    private List<RecipeDetailsDTO.ExtendedIngredient> loadIngredients(Long recipeId) {
+        return dsl
                 .select(RECIPE_INGREDIENT.INGREDIENT_ID,
                         INGREDIENT.NAME,
                         RECIPE_INGREDIENT.QUANTITY_G,
@@ -57,7 +217,9 @@ public class RecipeService {
                         r.get(RECIPE_INGREDIENT.QUANTITY_G),
                         r.get(RECIPE_INGREDIENT.UNIT)
                 ));
+    }
 
+    private RecipeDetailsDTO toDetails(RecipeRecord recipe, List<RecipeDetailsDTO.ExtendedIngredient> ingredients) {
         RecipeDetailsDTO.Nutrition nutrition = new RecipeDetailsDTO.Nutrition(
                 recipe.getCalories(),
                 recipe.getProtein(),
@@ -0,0 +1,173 @@
+package com.deyan.mealplanner.service;
+
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Converts recipe quantities into canonical shopping-list units.
+ * <ul>
+ *   <li>mass units become grams ({@code g});</li>
+ *   <li>volume units become grams when the ingredient's density is known, otherwise millilitres ({@code ml});</li>
+ *   <li>counts ("2 medium", "1 clove", no unit) become pieces ({@code pc});</li>
+ *   <li>anything else keeps its (lower-cased) unit name, e.g. {@code handful}.</li>
+ * </ul>
+ * Amounts in the same canonical unit can then be summed per ingredient.
+ */
+@Component
+public class UnitConverter {
+
+    public static final String GRAMS = "g";
+    public static final String MILLILITRES = "ml";
+    public static final String PIECES = "pc";
+
+    private static final Map<String, BigDecimal> GRAMS_PER_UNIT = Map.ofEntries(
+            Map.entry("g", BigDecimal.ONE),
+            Map.entry("gram", BigDecimal.ONE),
+            Map.entry("grams", BigDecimal.ONE),
+            Map.entry("mg", new BigDecimal("0.001")),
+            Map.entry("kg", new BigDecimal("1000")),
+            Map.entry("kilogram", new BigDecimal("1000")),
+            Map.entry("kilograms", new BigDecimal("1000")),
+            Map.entry("oz", new BigDecimal("28.3495")),
+            Map.entry("ounce", new BigDecimal("28.3495")),
+            Map.entry("ounces", new BigDecimal("28.3495")),
+            Map.entry("lb", new BigDecimal("453.592")),
+            Map.entry("lbs", new BigDecimal("453.592")),
+            Map.entry("pound", new BigDecimal("453.592")),
+            Map.entry("pounds", new BigDecimal("453.592")),
+            Map.entry("pinch", new BigDecimal("0.3")),
+            Map.entry("pinches", new BigDecimal("0.3"))
+    );
+
+    private static final Map<String, BigDecimal> ML_PER_UNIT = Map.ofEntries(
+            Map.entry("ml", BigDecimal.ONE),
+            Map.entry("milliliter", BigDecimal.ONE),
+            Map.entry("milliliters", BigDecimal.ONE),
+            Map.entry("l", new BigDecimal("1000")),
+            Map.entry("liter", new BigDecimal("1000")),
+            Map.entry("liters", new BigDecimal("1000")),
+            Map.entry("tsp", new BigDecimal("5")),
+            Map.entry("tsps", new BigDecimal("5")),
+            Map.entry("teaspoon", new BigDecimal("5")),
+            Map.entry("teaspoons", new BigDecimal("5")),
+            Map.entry("tbsp", new BigDecimal("15")),
+            Map.entry("tbsps", new BigDecimal("15")),
+            Map.entry("tablespoon", new BigDecimal("15")),
+            Map.entry("tablespoons", new BigDecimal("15")),
+            Map.entry("cup", new BigDecimal("240")),
+            Map.entry("cups", new BigDecimal("240")),
+            Map.entry("fl oz", new BigDecimal("29.5735")),
+            Map.entry("fl. oz", new BigDecimal("29.5735")),
+            Map.entry("pint", new BigDecimal("473.176")),
+            Map.entry("pints", new BigDecimal("473.176")),
+            Map.entry("quart", new BigDecimal("946.353")),
+            Map.entry("quarts", new BigDecimal("946.353"))
+    );
+
+    private static final Set<String> COUNT_UNITS = Set.of(
+            "", "piece", "pieces", "whole", "small", "medium", "large",
+            "clove", "cloves", "slice", "slices", "serving", "servings", "head", "heads");
+
+    /**
+     * Grams per millilitre, matched as whole words against the end of the ingredient name, where
+     * English puts the head noun: "rice vinegar" is vinegar, "sugar snap peas" is not sugar.
+     * Single-word compounds that would otherwise be missed get their own entry.
+     */
+    private static final Map<String, BigDecimal> DENSITY = Map.ofEntries(
+            Map.entry("water", new BigDecimal("1.00")),
+            Map.entry("milk", new BigDecimal("1.03")),
+            Map.entry("buttermilk", new BigDecimal("1.03")),
+            Map.entry("cream", new BigDecimal("1.01")),
+            Map.entry("yogurt", new BigDecimal("1.03")),
+            Map.entry("oil", new BigDecimal("0.92")),
+            Map.entry("olive oil", new BigDecimal("0.91")),
+            Map.entry("butter", new BigDecimal("0.91")),
+            Map.entry("honey", new BigDecimal("1.42")),
+            Map.entry("maple syrup", new BigDecimal("1.32")),
+            Map.entry("flour", new BigDecimal("0.53")),
+            Map.entry("sugar", new BigDecimal("0.85")),
+            Map.entry("brown sugar", new BigDecimal("0.93")),
+            Map.entry("salt", new BigDecimal("1.20")),
+            Map.entry("rice", new BigDecimal("0.85")),
+            Map.entry("oats", new BigDecimal("0.41")),
+            Map.entry("cocoa", new BigDecimal("0.52")),
+            Map.entry("soy sauce", new BigDecimal("1.15")),
+            Map.entry("vinegar", new BigDecimal("1.01")),
+            Map.entry("broth", new BigDecimal("1.00")),
+            Map.entry("stock", new BigDecimal("1.00"))
+    );
+    private static final int MAX_DENSITY_KEY_WORDS = 2;
+    private static final Pattern NON_LETTERS = Pattern.compile("[^a-z]+");
+
+    /**
+     * A quantity in a canonical unit.
+     */
+    public record Quantity(BigDecimal amount, String unit) { }
+
+    /**
+     * Converts a recipe quantity into its canonical unit.
+     *
+     * @param ingredient The ingredient name, used to look up its density.
+     * @param amount     The amount in the recipe's unit (null counts as zero).
+     * @param unit       The recipe's unit (may be null or blank).
+     * @return The converted quantity.
+     */
+    public Quantity toCanonical(String ingredient, BigDecimal amount, String unit) {
+        BigDecimal value = amount != null ? amount : BigDecimal.ZERO;
+        String u = unit != null ? unit.toLowerCase(Locale.ROOT).trim() : "";
+
+        BigDecimal grams = GRAMS_PER_UNIT.get(u);
+        if (grams != null) {
+            return new Quantity(round(value.multiply(grams)), GRAMS);
+        }
+        BigDecimal ml = ML_PER_UNIT.get(u);
+        if (ml != null) {
+            BigDecimal millilitres = value.multiply(ml);
+            BigDecimal density = densityOf(ingredient);
+            return density != null
+                    ? new Quantity(round(millilitres.multiply(density)), GRAMS)
+                    : new Quantity(round(millilitres), MILLILITRES);
+        }
+        if (COUNT_UNITS.contains(u)) {
+            return new Quantity(round(value), PIECES);
+        }
+        return new Quantity(round(value), u);
+    }
+
+    /**
+     * Formats a canonical quantity for display, e.g. {@code "240 g"}.
+     */
+    public static String format(BigDecimal amount, String unit) {
+        return amount.stripTrailingZeros().toPlainString() + " " + unit;
+    }
+
+    private static BigDecimal densityOf(String ingredient) {
+        if (ingredient == null) {
+            return null;
+        }
+        // "flour, all-purpose" / "oats (rolled)": the qualifier after the name does not count
+        String name = ingredient.toLowerCase(Locale.ROOT).split("[,(]", 2)[0];
+        List<String> words = Arrays.stream(NON_LETTERS.split(name))
+                .filter(w -> !w.isEmpty())
+                .toList();
+        for (int n = Math.min(MAX_DENSITY_KEY_WORDS, words.size()); n >= 1; n--) {
+            BigDecimal density = DENSITY.get(String.join(" ", words.subList(words.size() - n, words.size())));
+            if (density != null) {
+                return density;
+            }
+        }
+        return null;
+    }
+
+    private static BigDecimal round(BigDecimal value) {
+        return value.setScale(2, RoundingMode.HALF_UP);
+    }
+}
@@ -2,17 +2,26 @@ package com.deyan.mealplanner.service;
 
 import com.deyan.mealplanner.dto.*;
 import com.deyan.mealplanner.exceptions.AlreadyExistsException;
+import com.deyan.mealplanner.exceptions.BadRequestException;
 import com.deyan.mealplanner.exceptions.NotFoundException;
+import com.deyan.mealplanner.jooq.tables.records.UsersRecord;
 import lombok.extern.slf4j.Slf4j;
+import org.jooq.Condition;
 import org.jooq.DSLContext;
-import org.jooq.Table;
-import org.jooq.impl.DSL;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.Deque;
 import java.util.List;
 
 import static com.deyan.mealplanner.jooq.tables.UserProgress.USER_PROGRESS;
@@ -26,10 +35,70 @@ import static org.jooq.impl.DSL.*;
 @Slf4j
 public class UserService {
 
+    static final int MAX_PAGE_SIZE = 100;
+    static final int MAX_SERIES_POINTS = 1000;
+    private static final int ROLLING_AVERAGE_DAYS = 7;
+    private static final int SERIES_FETCH_SIZE = 500;
+
     private final DSLContext dsl;
     private final PasswordEncoder passwordEncoder;
     private final AchievementService achievementService;
 
+    /**
+     * Logs a weight entry, updates the user's streak and queues the achievement event in a
+     * single statement.
+     * <p>
+     * The insert relies on the unique index on {@code (user_id, date::date)}: a second log on
+     * the same day (even a concurrent one) inserts nothing, so the streak is only updated for
+     * the entry that actually got in, together with the user's latest weight. The new streak is
+     * the previous streak plus one when the latest earlier entry is from yesterday, and 1
+     * otherwise. The outbox event carries the new streak and log count for
+     * {@link OutboxDispatcher}; the log count is read from the statement's snapshot, which does
+     * not contain the new entry yet, hence the {@code + 1}. Unlocks from earlier events that
+     * were not shown yet are claimed and returned.
+     */
+    private static final String LOG_WEIGHT = """
+            with prev as (
+                select max(date)::date as last_day
+                  from user_progress
+                 where user_id = ? and date < ?
+            ),
+            ins as (
+                insert into user_progress (user_id, weight, date)
+                select id, ?, ? from users where id = ?
+                on conflict (user_id, (date::date)) do nothing
+                returning user_id, weight, date
+            ),
+            upd as (
+                update users u
+                   set day_streak = case when (select last_day from prev) = ins.date::date - 1
+                                         then coalesce(u.day_streak, 0) + 1
+                                         else 1 end,
+                       latest_weight    = ins.weight,
+                       latest_weight_at = ins.date
+                  from ins
+                 where u.id = ins.user_id
+                returning u.id, u.day_streak
+            ),
+            evt as (
+                insert into outbox_event (user_id, type, payload)
+                select id, 'WEIGHT_LOGGED',
+                       jsonb_build_object('STREAK', day_streak,
+                                          'TOTAL_LOGS', (select count(*) from user_progress p where p.user_id = upd.id) + 1)
+                  from upd
+            ),
+            seen as (
+                update user_achievement
+                   set notified_at = ?
+                 where user_id = ? and completed_at is not null and notified_at is null
+                   and exists (select 1 from ins)
+                returning achievement_id
+            )
+            select exists(select 1 from users where id = ?)                     as user_exists,
+                   (select day_streak from upd)                                 as streak,
+                   array(select achievement_id from seen order by 1)::bigint[] as unlocked
+            """;
+
     /**
      * Constructs the service with required dependencies.
      *
@@ -44,44 +113,54 @@ public class UserService {
     }
 
     /**
-     * Returns all users with their latest weight log (if any).
+     * Returns one page of users with their latest weight log (if any), in ID order.
+     *
+     * @param cursor Opaque cursor from the previous page, or null for the first page.
+     * @param limit  Maximum number of users to return (clamped to 1..{@value #MAX_PAGE_SIZE}).
+     * @return The page of users and the cursor for the next page.
+     * @throws BadRequestException If the cursor is malformed.
      */
-    public List<UserDTO> getAllUsers() {
-        // Subquery for latest progress
-        Table<?> latestProgress = dsl
-                .select(
-                        USER_PROGRESS.USER_ID,
-                        USER_PROGRESS.WEIGHT,
-                        USER_PROGRESS.DATE,
-                        DSL.rowNumber().over(
-                                DSL.partitionBy(USER_PROGRESS.USER_ID)
-                                        .orderBy(USER_PROGRESS.DATE.desc())
-                        ).as("rn")
-                )
-                .from(USER_PROGRESS)
-                .asTable("latest_progress");
-
-        return dsl.select(
-                        USERS.ID,
-                        USERS.NAME,
-                        USERS.EMAIL,
-                        USERS.DAY_STREAK,
-                        field(name("latest_progress", "weight"), BigDecimal.class),
-                        field(name("latest_progress", "date"), LocalDateTime.class)
-                )
-                .from(USERS)
-                .leftJoin(latestProgress)
-                .on(field(name("latest_progress", "user_id"), Long.class).eq(USERS.ID.cast(Long.class))
-                        .and(field(name("latest_progress", "rn"), Integer.class).eq(1)))
-                .fetch()
-                .map(record -> new UserDTO(
-                        record.get(USERS.ID),
-                        record.get(USERS.NAME),
-                        record.get(USERS.EMAIL),
-                        record.get(field(name("latest_progress", "weight"), BigDecimal.class)),
-                        record.get(USERS.DAY_STREAK),
-                        record.get(field(name("latest_progress", "date"), LocalDateTime.class))
-                ));
+    public UserPageDTO getAllUsers(String cursor, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        var page = dsl.selectFrom(USERS)
+                .where(afterCursor(cursor))
+                .orderBy(USERS.ID)
+                .limit(size + 1)
+                .fetch();
+
+        String next = page.size() > size ? encodeCursor(page.get(size - 1).getId()) : null;
+        List<UserDTO> items = page.stream()
+                .limit(size)
+                .map(UserService::toDTO)
+                .toList();
+        return new UserPageDTO(items, next);
+    }
+
+    static String encodeCursor(long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(Long.toString(id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Condition afterCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return noCondition();
+        }
+        try {
+            return USERS.ID.gt(Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)));
+        } catch (RuntimeException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+
+    private static UserDTO toDTO(UsersRecord user) {
+        return new UserDTO(
+                user.getId(),
+                user.getName(),
+                user.getEmail(),
+                user.getLatestWeight(),
+                user.getDayStreak(),
+                user.getLatestWeightAt()
+        );
     }
 
     /**
@@ -98,21 +177,7 @@ public class UserService {
         if (userRecord == null) {
             throw new NotFoundException("User not found with email: " + email);
         }
-
-        var latestProgress = dsl.selectFrom(USER_PROGRESS)
-                .where(USER_PROGRESS.USER_ID.eq(userRecord.getId()))
-                .orderBy(USER_PROGRESS.DATE.desc())
-                .limit(1)
-                .fetchOne();
-
-        return new UserDTO(
-                userRecord.getId(),
-                userRecord.getName(),
-                userRecord.getEmail(),
-                latestProgress != null ? latestProgress.getWeight() : null,
-                userRecord.getDayStreak(),
-                latestProgress != null ? latestProgress.getDate() : null
-        );
+        return toDTO(userRecord);
     }
 
     /**
@@ -163,21 +228,7 @@ public class UserService {
         if (userRecord == null) {
             throw new NotFoundException("User not found with ID: " + id);
         }
-
-        var latestProgress = dsl.selectFrom(USER_PROGRESS)
-                .where(USER_PROGRESS.USER_ID.eq(userRecord.getId()))
-                .orderBy(USER_PROGRESS.DATE.desc())
-                .limit(1)
-                .fetchOne();
-
-        return new UserDTO(
-                userRecord.getId(),
-                userRecord.getName(),
-                userRecord.getEmail(),
-                latestProgress != null ? latestProgress.getWeight() : null,
-                userRecord.getDayStreak(),
-                latestProgress != null ? latestProgress.getDate() : null
-        );
+        return toDTO(userRecord);
     }
 
     /**
@@ -199,69 +250,28 @@ public class UserService {
 
     /**
      * Adds a new weight entry for a user and updates their streak.
+     * The entry, the uniqueness check, the streak update and the achievement event are one round
+     * trip (see {@link #LOG_WEIGHT}); achievements are evaluated afterwards in the background, so
+     * the returned unlocks are those from earlier entries not shown yet.
+     *
+     * @throws NotFoundException      If the user does not exist.
+     * @throws AlreadyExistsException If the user already logged a weight today.
      */
     public WeightEntryDTO addUserWeightEntry(Long userId, BigDecimal weight) {
-        boolean exists = dsl.fetchExists(
-                dsl.selectOne()
-                        .from(USERS)
-                        .where(USERS.ID.eq(userId)));
-
-        if (!exists) {
-            throw new NotFoundException("User not found with ID: " + userId);
-        }
-
-        LocalDate today = LocalDate.now();
         LocalDateTime now = LocalDateTime.now();
+        LocalDateTime startOfToday = now.toLocalDate().atStartOfDay();
 
-        boolean alreadyLoggedToday = dsl.fetchExists(
-                dsl.selectOne()
-                        .from(USER_PROGRESS)
-                        .where(USER_PROGRESS.USER_ID.eq(userId))
-                        .and(USER_PROGRESS.DATE.cast(LocalDate.class).eq(today)));
+        var result = dsl.fetchOne(LOG_WEIGHT, userId, startOfToday, weight, now, userId, now, userId, userId);
 
-        if (alreadyLoggedToday) {
-            throw new AlreadyExistsException("You already logged your weight today.");
+        if (!result.get("user_exists", Boolean.class)) {
+            throw new NotFoundException("User not found with ID: " + userId);
         }
-
-        dsl.insertInto(USER_PROGRESS)
-                .set(USER_PROGRESS.USER_ID, userId)
-                .set(USER_PROGRESS.WEIGHT, weight)
-                .set(USER_PROGRESS.DATE, now)
-                .execute();
-
-        int newStreak = 1;
-
-        LocalDate lastEntryDate = dsl
-                .select(USER_PROGRESS.DATE)
-                .from(USER_PROGRESS)
-                .where(USER_PROGRESS.USER_ID.eq(userId))
-                .and(USER_PROGRESS.DATE.cast(LocalDate.class).lt(today))
-                .orderBy(USER_PROGRESS.DATE.desc())
-                .limit(1)
-                .fetchOptionalInto(LocalDateTime.class)
-                .map(LocalDateTime::toLocalDate)
-                .orElse(null);
-
-        Integer currentStreak = dsl
-                .select(USERS.DAY_STREAK)
-                .from(USERS)
-                .where(USERS.ID.eq(userId))
-                .fetchOneInto(Integer.class);
-
-        if (currentStreak == null) currentStreak = 0;
-
-        if (lastEntryDate != null && lastEntryDate.equals(today.minusDays(1))) {
-            newStreak = currentStreak + 1;
+        Integer newStreak = result.get("streak", Integer.class);
+        if (newStreak == null) {
+            throw new AlreadyExistsException("You already logged your weight today.");
         }
 
-        dsl.update(USERS)
-                .set(USERS.DAY_STREAK, newStreak)
-                .where(USERS.ID.eq(userId))
-                .execute();
-
-        List<Long> unlocked = achievementService.updateAfterWeightLog(userId, newStreak);
-
-        return new WeightEntryDTO(weight, now, unlocked);
+        return new WeightEntryDTO(weight, now, List.of(result.get("unlocked", Long[].class)));
     }
 
     /**
@@ -271,6 +281,13 @@ public class UserService {
         return achievementService.getAchievementsForUser(userId);
     }
 
+    /**
+     * Claims the user's achievements unlocked since the last claim (each one only once).
+     */
+    public List<Long> claimNewUnlocks(Long userId) {
+        return achievementService.claimUnlocked(userId);
+    }
+
     /**
      * Returns the user's last 30 days of weight entries (for charting).
      */
@@ -282,4 +299,65 @@ public class UserService {
                 .orderBy(USER_PROGRESS.DATE.asc())
                 .fetchInto(WeightChartDTO.class);
     }
+
+    /**
+     * Returns the user's weight history between two dates, downsampled to at most {@code points}
+     * entries with {@link LttbDownsampler}, each with the average weight of the 7 days up to it.
+     * <p>
+     * Rows are streamed through a server-side cursor (fetch size {@value #SERIES_FETCH_SIZE}),
+     * so a long range is never loaded at once; only the current rolling window and the
+     * downsampler's two buckets are held. The count and the stream run in one repeatable-read
+     * transaction so they see the same rows.
+     *
+     * @param userId The ID of the user.
+     * @param from   First day of the range (inclusive).
+     * @param to     Last day of the range (inclusive).
+     * @param points Maximum number of points (clamped to 3..{@value #MAX_SERIES_POINTS}).
+     * @return The points in date order.
+     * @throws BadRequestException If {@code from} is after {@code to}.
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public List<WeightSeriesPointDTO> getWeightSeries(long userId, LocalDate from, LocalDate to, int points) {
+        if (from.isAfter(to)) {
+            throw new BadRequestException("from must not be after to");
+        }
+        int threshold = Math.max(3, Math.min(points, MAX_SERIES_POINTS));
+        LocalDateTime start = from.atStartOfDay();
+        LocalDateTime end = to.plusDays(1).atStartOfDay();
+
+        int count = dsl.fetchCount(USER_PROGRESS, USER_PROGRESS.USER_ID.eq(userId)
+                .and(USER_PROGRESS.DATE.ge(start))
+                .and(USER_PROGRESS.DATE.lt(end)));
+        var sampler = new LttbDownsampler<WeightSeriesPointDTO>(count, threshold,
+                p -> p.date().toEpochSecond(ZoneOffset.UTC), p -> p.weight().doubleValue());
+
+        // entries from the week before the range only feed the rolling average
+        Deque<WindowEntry> window = new ArrayDeque<>();
+        BigDecimal windowSum = BigDecimal.ZERO;
+        try (var cursor = dsl.select(USER_PROGRESS.DATE, USER_PROGRESS.WEIGHT)
+                .from(USER_PROGRESS)
+                .where(USER_PROGRESS.USER_ID.eq(userId))
+                .and(USER_PROGRESS.DATE.ge(start.minusDays(ROLLING_AVERAGE_DAYS)))
+                .and(USER_PROGRESS.DATE.lt(end))
+                .orderBy(USER_PROGRESS.DATE)
+                .fetchSize(SERIES_FETCH_SIZE)
+                .fetchLazy()) {
+            for (var row : cursor) {
+                LocalDateTime date = row.value1();
+                BigDecimal weight = row.value2();
+                window.addLast(new WindowEntry(date, weight));
+                windowSum = windowSum.add(weight);
+                while (!window.peekFirst().date().isAfter(date.minusDays(ROLLING_AVERAGE_DAYS))) {
+                    windowSum = windowSum.subtract(window.removeFirst().weight());
+                }
+                if (!date.isBefore(start)) {
+                    BigDecimal average = windowSum.divide(BigDecimal.valueOf(window.size()), 2, RoundingMode.HALF_UP);
+                    sampler.add(new WeightSeriesPointDTO(date, weight, average));
+                }
+            }
+        }
+        return sampler.result();
+    }
+
+    private record WindowEntry(LocalDateTime date, BigDecimal weight) { }
 }
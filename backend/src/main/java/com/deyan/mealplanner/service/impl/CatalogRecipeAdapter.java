@@ -0,0 +1,126 @@
+package com.deyan.mealplanner.service.impl;
+
+import com.deyan.mealplanner.dto.MealPlanDTO;
+import com.deyan.mealplanner.dto.NutritionResponse;
+import com.deyan.mealplanner.dto.RecipeDetailsDTO;
+import com.deyan.mealplanner.service.RecipeService;
+import com.deyan.mealplanner.service.interfaces.RecipeAPIAdapter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Read-through {@link RecipeAPIAdapter} that serves recipes from the local catalog
+ * ({@code recipe} / {@code recipe_ingredient} tables) and only falls back to the remote
+ * adapter for unknown or stale recipes.
+ * <p>
+ * This is the adapter injected everywhere; the remote one is qualified as {@code "remote"}.
+ */
+@Slf4j
+@Service
+@Primary
+public class CatalogRecipeAdapter implements RecipeAPIAdapter {
+
+    private final RecipeAPIAdapter remote;
+    private final RecipeService catalog;
+
+    public CatalogRecipeAdapter(@Qualifier("remote") RecipeAPIAdapter remote, RecipeService catalog) {
+        this.remote = remote;
+        this.catalog = catalog;
+    }
+
+    /**
+     * Plans are always generated remotely.
+     */
+    @Override
+    public MealPlanDTO generateMealPlan(Integer targetKcal, int days) {
+        return remote.generateMealPlan(targetKcal, days);
+    }
+
+    /**
+     * Returns the recipe from the local catalog when it is fresh, otherwise from the remote adapter.
+     *
+     * @param apiId The Spoonacular recipe ID.
+     * @return The full {@link RecipeDetailsDTO}.
+     */
+    @Override
+    public RecipeDetailsDTO getRecipe(Long apiId) {
+        return catalog.findFreshRecipe(apiId)
+                .map(r -> {
+                    log.debug("Catalog HIT for recipe {}", apiId);
+                    return r;
+                })
+                .orElseGet(() -> remote.getRecipe(apiId));
+    }
+
+    /**
+     * Serves every fresh recipe from the catalog and asks the remote adapter for the rest
+     * in one bulk call.
+     *
+     * @param apiIds The recipe IDs.
+     * @return The resolved recipes, keyed by ID.
+     */
+    @Override
+    public Map<Long, RecipeDetailsDTO> getRecipes(Collection<Long> apiIds) {
+        return getRecipeBatch(apiIds).recipes();
+    }
+
+    /**
+     * Like {@link #getRecipes}; the recipes served from the catalog are fresh, so their macros
+     * come with the same bulk query and are reported as known.
+     *
+     * @param apiIds The recipe IDs.
+     * @return The resolved recipes and the IDs served from the catalog.
+     */
+    @Override
+    public RecipeBatch getRecipeBatch(Collection<Long> apiIds) {
+        Set<Long> wanted = new LinkedHashSet<>(apiIds);
+        Map<Long, RecipeDetailsDTO> out = new HashMap<>(catalog.findFreshRecipes(wanted));
+        Set<Long> known = Set.copyOf(out.keySet());
+        wanted.removeAll(known);
+        log.debug("Catalog HIT for {} recipes, {} to fetch", known.size(), wanted.size());
+        if (!wanted.isEmpty()) {
+            out.putAll(remote.getRecipes(wanted));
+        }
+        return new RecipeBatch(out, known);
+    }
+
+    /**
+     * Returns the macros stored in the catalog when they are known, otherwise asks the remote adapter.
+     *
+     * @param id The recipe ID.
+     * @return The nutrition data, if available.
+     */
+    @Override
+    public Optional<NutritionResponse> fetchNutritionWidget(Long id) {
+        Optional<NutritionResponse> local = catalog.findFreshNutrition(id)
+                .map(n -> new NutritionResponse(
+                        n.calories().toPlainString(),
+                        plain(n.protein()),
+                        plain(n.fat()),
+                        plain(n.carbohydrates())));
+        return local.isPresent() ? local : remote.fetchNutritionWidget(id);
+    }
+
+    /**
+     * Reports the macros as known when the catalog holds them fresh, otherwise asks the remote
+     * adapter for the widget; the catalog is queried once either way.
+     *
+     * @param id The recipe ID.
+     * @return The outcome of the lookup.
+     */
+    @Override
+    public NutritionLookup lookupNutrition(Long id) {
+        return catalog.findFreshNutrition(id).isPresent()
+                ? NutritionLookup.KNOWN
+                : NutritionLookup.fetched(remote.fetchNutritionWidget(id).orElse(null));
+    }
+
+    private static String plain(BigDecimal value) {
+        return value != null ? value.toPlainString() : null;
+    }
+}
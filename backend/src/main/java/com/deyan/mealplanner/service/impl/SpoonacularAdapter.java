@@ -1,11 +1,15 @@
 package com.deyan.mealplanner.service.impl;
 
+import com.deyan.mealplanner.config.TwoLevelCache;
 import com.deyan.mealplanner.dto.*;
 import com.deyan.mealplanner.exceptions.ExternalApiQuotaException;
 import com.deyan.mealplanner.service.interfaces.RecipeAPIAdapter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
@@ -17,19 +21,23 @@ import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 @Profile("!test")
+@Qualifier("remote")
 public class SpoonacularAdapter implements RecipeAPIAdapter {
 
     private final WebClient web;
+    private final CacheManager cacheManager;
 
     @Value("${spoonacular.key}")
     private String apiKey;
 
     private static final String PLAN_ENDPOINT = "/mealplanner/generate";
+    private static final String BULK_ENDPOINT = "/recipes/informationBulk";
     private static final String INFO_ENDPOINT =
             "/recipes/{id}/information?includeNutrition=true&apiKey={key}";
 
@@ -129,14 +137,15 @@ public class SpoonacularAdapter implements RecipeAPIAdapter {
 
     /**
      * Fetches detailed recipe information including nutrition from Spoonacular.
-     * Uses caching to avoid repeat requests for the same recipe ID.
+     * Uses caching to avoid repeat requests for the same recipe ID; concurrent misses
+     * for one ID share a single request ({@code sync = true}).
      *
      * @param id The ID of the recipe.
      * @return The full {@link RecipeDetailsDTO}.
      * @throws ExternalApiQuotaException if quota is exceeded or access is denied.
      */
     @Override
-    @Cacheable(cacheNames = "recipes", key = "'recipe:' + #id")
+    @Cacheable(cacheNames = "recipes", key = "'recipe:' + #id", sync = true)
     public RecipeDetailsDTO getRecipe(Long id) {
         log.info("⏩ Cache MISS → calling Spoonacular for recipe {}", id);
         try {
@@ -158,23 +167,101 @@ public class SpoonacularAdapter implements RecipeAPIAdapter {
         }
     }
 
+    /**
+     * Fetches several recipes: cached ones are read from the "recipes" cache in one multi-get,
+     * the rest with a single call to Spoonacular's bulk information endpoint. Fetched recipes
+     * are added to the cache.
+     *
+     * @param apiIds The recipe IDs.
+     * @return The resolved recipes, keyed by ID.
+     * @throws ExternalApiQuotaException if quota is exceeded or access is denied.
+     */
+    @Override
+    public Map<Long, RecipeDetailsDTO> getRecipes(Collection<Long> apiIds) {
+        Set<Long> wanted = new LinkedHashSet<>(apiIds);
+        Map<Long, RecipeDetailsDTO> out = new HashMap<>();
+        if (wanted.isEmpty()) {
+            return out;
+        }
+
+        Cache cache = cacheManager.getCache("recipes");
+        List<String> keys = wanted.stream().map(id -> "recipe:" + id).toList();
+        Map<Object, Object> cached = cache instanceof TwoLevelCache twoLevel
+                ? twoLevel.getAll(keys)
+                : Map.of();
+        for (Object value : cached.values()) {
+            RecipeDetailsDTO recipe = (RecipeDetailsDTO) value;
+            out.put(recipe.id(), recipe);
+        }
+        wanted.removeAll(out.keySet());
+        if (wanted.isEmpty()) {
+            return out;
+        }
+
+        log.info("⏩ Cache MISS → calling Spoonacular bulk endpoint for {} recipes", wanted.size());
+        String ids = wanted.stream().map(String::valueOf).collect(Collectors.joining(","));
+        List<RecipeDetailsDTO> fetched = web.get()
+                .uri(uri -> uri.path(BULK_ENDPOINT)
+                        .queryParam("ids", ids)
+                        .queryParam("includeNutrition", true)
+                        .queryParam("apiKey", apiKey)
+                        .build())
+                .retrieve()
+                .onStatus(HttpStatusCode::is4xxClientError, res ->
+                        res.bodyToMono(String.class).flatMap(msg -> {
+                            log.warn("❌ Spoonacular 4xx: {}", msg);
+                            return Mono.error(new ExternalApiQuotaException("Spoonacular quota exceeded or access denied"));
+                        }))
+                .onStatus(HttpStatusCode::is5xxServerError, res ->
+                        Mono.error(new RuntimeException("Spoonacular server error")))
+                .bodyToFlux(RecipeDetailsDTO.class)
+                .collectList()
+                .block();
+
+        if (fetched != null) {
+            for (RecipeDetailsDTO recipe : fetched) {
+                cache.put("recipe:" + recipe.id(), recipe);
+                out.put(recipe.id(), recipe);
+            }
+        }
+        return out;
+    }
+
     /**
      * Optionally fetches raw nutrition widget data from Spoonacular for a recipe.
+     * Results are cached in "nutrition"; failures are remembered for a short time in
+     * "nutrition-failures" so a broken widget is not requested for every plan.
      *
      * @param id The recipe ID.
      * @return An optional {@link NutritionResponse} if available.
      */
+    @Override
     public Optional<NutritionResponse> fetchNutritionWidget(Long id) {
-        String url = String.format("/recipes/%d/nutritionWidget.json?apiKey=%s", id, apiKey);
-
+        String key = "nutrition:" + id;
+        Cache failures = cacheManager.getCache("nutrition-failures");
+        if (failures.get(key) != null) {
+            log.debug("Nutrition widget of recipe {} failed recently, skipping", id);
+            return Optional.empty();
+        }
         try {
-            return Optional.ofNullable(web.get()
-                    .uri(url)
-                    .retrieve()
-                    .bodyToMono(NutritionResponse.class)
-                    .block());
-        } catch (Exception e) {
+            return Optional.of(cacheManager.getCache("nutrition").get(key, () -> requestNutritionWidget(id)));
+        } catch (RuntimeException e) {
+            log.warn("Nutrition widget of recipe {} unavailable: {}", id, e.getMessage());
+            failures.put(key, Boolean.TRUE);
             return Optional.empty();
         }
     }
+
+    private NutritionResponse requestNutritionWidget(Long id) {
+        log.info("⏩ Cache MISS → calling Spoonacular for nutrition of recipe {}", id);
+        NutritionResponse widget = web.get()
+                .uri("/recipes/{id}/nutritionWidget.json?apiKey={key}", id, apiKey)
+                .retrieve()
+                .bodyToMono(NutritionResponse.class)
+                .block();
+        if (widget == null) {
+            throw new IllegalStateException("empty nutrition widget");
+        }
+        return widget;
+    }
 }
@@ -4,10 +4,66 @@ import com.deyan.mealplanner.dto.MealPlanDTO;
 import com.deyan.mealplanner.dto.NutritionResponse;
 import com.deyan.mealplanner.dto.RecipeDetailsDTO;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 public interface RecipeAPIAdapter {
     MealPlanDTO generateMealPlan(Integer targetKcal,int days);
     RecipeDetailsDTO getRecipe(Long apiId);
+
+    /**
+     * Fetches several recipes at once.
+     *
+     * @param apiIds The recipe IDs; duplicates are ignored.
+     * @return The recipes that could be resolved, keyed by ID.
+     */
+    Map<Long, RecipeDetailsDTO> getRecipes(Collection<Long> apiIds);
+
+    /**
+     * Bulk lookup for recipes that are about to be stored: the recipes plus the IDs whose macros
+     * the adapter already holds, so callers can skip {@link #lookupNutrition(Long)} for those.
+     *
+     * @param apiIds The recipe IDs; duplicates are ignored.
+     * @return The recipes that could be resolved and the IDs with known macros.
+     */
+    default RecipeBatch getRecipeBatch(Collection<Long> apiIds) {
+        return new RecipeBatch(getRecipes(apiIds), Set.of());
+    }
     Optional<NutritionResponse> fetchNutritionWidget(Long id);
+
+    /**
+     * Looks up the nutrition of a recipe that is about to be stored. Adapters backed by a store
+     * report macros they already hold as {@linkplain NutritionLookup#KNOWN known}, so callers can
+     * skip the widget; otherwise the widget is fetched.
+     *
+     * @param id The recipe ID.
+     * @return The outcome of the lookup.
+     */
+    default NutritionLookup lookupNutrition(Long id) {
+        return NutritionLookup.fetched(fetchNutritionWidget(id).orElse(null));
+    }
+
+    /**
+     * Outcome of {@link #getRecipeBatch(Collection)}.
+     *
+     * @param recipes        The resolved recipes, keyed by ID.
+     * @param nutritionKnown The IDs whose macros are already stored locally.
+     */
+    record RecipeBatch(Map<Long, RecipeDetailsDTO> recipes, Set<Long> nutritionKnown) { }
+
+    /**
+     * Outcome of {@link #lookupNutrition(Long)}.
+     *
+     * @param known  Whether the macros are already stored locally; no widget is fetched then.
+     * @param widget The widget data; null when the macros are known or the widget is unavailable.
+     */
+    record NutritionLookup(boolean known, NutritionResponse widget) {
+        public static final NutritionLookup KNOWN = new NutritionLookup(true, null);
+
+        public static NutritionLookup fetched(NutritionResponse widget) {
+            return new NutritionLookup(false, widget);
+        }
+    }
 }
@@ -0,0 +1,5 @@
+/* V17__recipe_fetched_at.sql – when a recipe was last pulled from Spoonacular.
+   Used to decide whether the local copy is fresh enough to serve instead of calling the API. */
+
+ALTER TABLE recipe
+    ADD COLUMN IF NOT EXISTS fetched_at timestamp NOT NULL DEFAULT now();
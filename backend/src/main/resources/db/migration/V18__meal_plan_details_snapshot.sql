@@ -0,0 +1,66 @@
+/* Fully assembled MealPlanDetailsDTO, written when the plan is created and served on reads.
+   NULL means "rebuild on next read"; the triggers below reset it when referenced data changes. */
+ALTER TABLE meal_plan ADD COLUMN details_snapshot jsonb;
+
+/* ========== recipe changed ========= */
+CREATE OR REPLACE FUNCTION invalidate_snapshots_for_recipe() RETURNS trigger AS $$
+DECLARE
+    changed bigint;
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        changed := OLD.recipe_id;
+    ELSE
+        changed := NEW.recipe_id;
+    END IF;
+
+    UPDATE meal_plan
+       SET details_snapshot = NULL
+     WHERE details_snapshot IS NOT NULL
+       AND id IN (SELECT meal_plan_id FROM meal_plan_recipe WHERE recipe_id = changed);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION invalidate_snapshots_for_recipe_row() RETURNS trigger AS $$
+BEGIN
+    UPDATE meal_plan
+       SET details_snapshot = NULL
+     WHERE details_snapshot IS NOT NULL
+       AND id IN (SELECT meal_plan_id FROM meal_plan_recipe WHERE recipe_id = NEW.id);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER recipe_snapshot_invalidation
+    AFTER UPDATE ON recipe
+    FOR EACH ROW
+    WHEN (OLD.name      IS DISTINCT FROM NEW.name
+       OR OLD.prep_time IS DISTINCT FROM NEW.prep_time
+       OR OLD.servings  IS DISTINCT FROM NEW.servings
+       OR OLD.url       IS DISTINCT FROM NEW.url)
+    EXECUTE FUNCTION invalidate_snapshots_for_recipe_row();
+
+CREATE TRIGGER recipe_ingredient_snapshot_invalidation
+    AFTER INSERT OR UPDATE OR DELETE ON recipe_ingredient
+    FOR EACH ROW
+    EXECUTE FUNCTION invalidate_snapshots_for_recipe();
+
+/* ========== ingredient renamed ========= */
+CREATE OR REPLACE FUNCTION invalidate_snapshots_for_ingredient() RETURNS trigger AS $$
+BEGIN
+    UPDATE meal_plan
+       SET details_snapshot = NULL
+     WHERE details_snapshot IS NOT NULL
+       AND id IN (SELECT mpr.meal_plan_id
+                    FROM meal_plan_recipe mpr
+                    JOIN recipe_ingredient ri ON ri.recipe_id = mpr.recipe_id
+                   WHERE ri.ingredient_id = NEW.id);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER ingredient_snapshot_invalidation
+    AFTER UPDATE ON ingredient
+    FOR EACH ROW
+    WHEN (OLD.name IS DISTINCT FROM NEW.name)
+    EXECUTE FUNCTION invalidate_snapshots_for_ingredient();
@@ -0,0 +1,23 @@
+/* Shopping-list quantities become a numeric amount plus a canonical unit
+   ('g', 'ml', 'pc' or an unconvertible unit name such as 'handful'). */
+ALTER TABLE shopping_list_item
+    ADD COLUMN amount numeric,
+    ADD COLUMN unit   text;
+
+-- legacy rows look like "240 g", "2 cups" or "3"
+UPDATE shopping_list_item
+   SET amount = COALESCE(substring(quantity FROM '^\s*([0-9]+(\.[0-9]+)?)')::numeric, 0),
+       unit   = COALESCE(NULLIF(lower(trim(substring(quantity FROM '^\s*[0-9.]*\s*(.*)$'))), ''), 'pc');
+
+ALTER TABLE shopping_list_item
+    ALTER COLUMN amount SET NOT NULL,
+    ALTER COLUMN unit   SET NOT NULL,
+    DROP COLUMN quantity;
+
+-- one row per ingredient and unit, so amounts that cannot be converted are not lost
+ALTER TABLE shopping_list_item DROP CONSTRAINT shopping_list_item_pkey;
+ALTER TABLE shopping_list_item
+    ADD CONSTRAINT shopping_list_item_pkey PRIMARY KEY (shopping_list_id, ingredient_id, unit);
+
+-- the snapshot format changed (quantityText -> amount + unit)
+UPDATE meal_plan SET details_snapshot = NULL;
@@ -0,0 +1,45 @@
+/* Version stamp of a plan's content, used for HTTP ETag / Last-Modified. */
+ALTER TABLE meal_plan ADD COLUMN updated_at timestamp NOT NULL DEFAULT now();
+UPDATE meal_plan SET updated_at = created_at WHERE created_at IS NOT NULL;
+
+/* A change to a referenced recipe or ingredient also changes the plan's version. */
+CREATE OR REPLACE FUNCTION invalidate_snapshots_for_recipe() RETURNS trigger AS $$
+DECLARE
+    changed bigint;
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        changed := OLD.recipe_id;
+    ELSE
+        changed := NEW.recipe_id;
+    END IF;
+
+    UPDATE meal_plan
+       SET details_snapshot = NULL,
+           updated_at       = now()
+     WHERE id IN (SELECT meal_plan_id FROM meal_plan_recipe WHERE recipe_id = changed);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION invalidate_snapshots_for_recipe_row() RETURNS trigger AS $$
+BEGIN
+    UPDATE meal_plan
+       SET details_snapshot = NULL,
+           updated_at       = now()
+     WHERE id IN (SELECT meal_plan_id FROM meal_plan_recipe WHERE recipe_id = NEW.id);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION invalidate_snapshots_for_ingredient() RETURNS trigger AS $$
+BEGIN
+    UPDATE meal_plan
+       SET details_snapshot = NULL,
+           updated_at       = now()
+     WHERE id IN (SELECT mpr.meal_plan_id
+                    FROM meal_plan_recipe mpr
+                    JOIN recipe_ingredient ri ON ri.recipe_id = mpr.recipe_id
+                   WHERE ri.ingredient_id = NEW.id);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,6 @@
+/* Keyset pagination of a user's plan history: (user_id, created_at, id) is the seek key. */
+UPDATE meal_plan SET created_at = now() WHERE created_at IS NULL;
+ALTER TABLE meal_plan ALTER COLUMN created_at SET NOT NULL;
+
+CREATE INDEX IF NOT EXISTS meal_plan_user_created_idx
+    ON meal_plan (user_id, created_at DESC, id DESC);
@@ -0,0 +1,11 @@
+/* Deviation of a plan's actual daily macros from its targets (actual - target) before and after
+   the automatic repair stage. NULL when the plan was within tolerance and never repaired. */
+ALTER TABLE meal_plan
+    ADD COLUMN kcal_delta_before    integer,
+    ADD COLUMN protein_delta_before integer,
+    ADD COLUMN carb_delta_before    integer,
+    ADD COLUMN fat_delta_before     integer,
+    ADD COLUMN kcal_delta_after     integer,
+    ADD COLUMN protein_delta_after  integer,
+    ADD COLUMN carb_delta_after     integer,
+    ADD COLUMN fat_delta_after      integer;
@@ -0,0 +1,10 @@
+/* At most one weight log per user and calendar day, enforced by the database
+   so concurrent requests cannot both log the same day. */
+DELETE FROM user_progress p
+ USING user_progress earlier
+ WHERE earlier.user_id = p.user_id
+   AND earlier.date::date = p.date::date
+   AND earlier.id < p.id;
+
+CREATE UNIQUE INDEX user_progress_user_day_uq
+    ON user_progress (user_id, (date::date));
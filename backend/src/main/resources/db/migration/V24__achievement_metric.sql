@@ -0,0 +1,13 @@
+/* What an achievement's target is measured against, so rules are data:
+   STREAK     - consecutive days with a weight log
+   TOTAL_LOGS - number of weight logs */
+ALTER TABLE achievement ADD COLUMN metric text;
+
+UPDATE achievement SET metric = 'STREAK'     WHERE id IN (1, 2, 3);
+UPDATE achievement SET metric = 'TOTAL_LOGS' WHERE id IN (4, 5, 6);
+UPDATE achievement SET metric = 'STREAK'     WHERE metric IS NULL;
+
+ALTER TABLE achievement ALTER COLUMN metric SET NOT NULL;
+
+/* the seed inserted explicit ids; move the identity past them so new achievements can be plain inserts */
+SELECT setval(pg_get_serial_sequence('achievement', 'id'), (SELECT coalesce(max(id), 0) + 1 FROM achievement), false);
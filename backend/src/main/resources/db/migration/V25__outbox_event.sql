@@ -0,0 +1,13 @@
+/* Events written in the same transaction as the change that caused them and processed
+   asynchronously by OutboxDispatcher. payload maps achievement metrics to their new values. */
+CREATE TABLE outbox_event (
+    id         bigint GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    user_id    bigint    NOT NULL REFERENCES users (id) ON DELETE CASCADE,
+    type       text      NOT NULL,
+    payload    jsonb     NOT NULL,
+    created_at timestamp NOT NULL DEFAULT now()
+);
+
+/* unlocks are shown to the user once; existing ones count as shown */
+ALTER TABLE user_achievement ADD COLUMN notified_at timestamp;
+UPDATE user_achievement SET notified_at = completed_at WHERE completed_at IS NOT NULL;
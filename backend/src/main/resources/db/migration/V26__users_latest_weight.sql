@@ -0,0 +1,13 @@
+/* Latest weight log kept on the user row (maintained by the weight-log statement), so user reads
+   no longer rank the whole user_progress table */
+ALTER TABLE users
+    ADD COLUMN latest_weight    numeric,
+    ADD COLUMN latest_weight_at timestamp;
+
+UPDATE users u
+   SET latest_weight    = p.weight,
+       latest_weight_at = p.date
+  FROM (SELECT DISTINCT ON (user_id) user_id, weight, date
+          FROM user_progress
+         ORDER BY user_id, date DESC) p
+ WHERE p.user_id = u.id;
@@ -0,0 +1,3 @@
+/* backs range scans over a user's weight history (weight series, previous-day lookup when logging) */
+CREATE INDEX IF NOT EXISTS user_progress_user_date_idx
+    ON user_progress (user_id, date);
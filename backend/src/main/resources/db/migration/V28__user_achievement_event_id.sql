@@ -0,0 +1,3 @@
+/* The outbox event a row's progress was last written from. Older events (processed late, e.g. by
+   another dispatcher) may still unlock the achievement but no longer overwrite the progress. */
+ALTER TABLE user_achievement ADD COLUMN event_id bigint;
@@ -0,0 +1,85 @@
+package com.deyan.mealplanner;
+
+import com.deyan.mealplanner.dto.CreateUserRequest;
+import com.deyan.mealplanner.dto.MealPlanDetailsDTO.MealSlotDTO;
+import com.deyan.mealplanner.service.MealPlanService;
+import com.deyan.mealplanner.service.RecipeCatalogIndex;
+import com.deyan.mealplanner.service.UserService;
+import com.deyan.mealplanner.service.interfaces.RecipeAPIAdapter;
+import org.jooq.DSLContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.deyan.mealplanner.jooq.tables.Recipe.RECIPE;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest(properties = "mealplanner.local-generator.enabled=true")
+class LocalCatalogPlanTests extends AbstractIT {
+
+    static final long FIRST_SEEDED_ID = 7_000_000L;
+
+    @Autowired MealPlanService mealPlanService;
+    @Autowired UserService userService;
+    @Autowired RecipeCatalogIndex catalogIndex;
+    @Autowired DSLContext dsl;
+    @MockitoSpyBean(name = "recipeAPIAdapter") RecipeAPIAdapter recipeAPIAdapter;
+
+    long userId;
+
+    // 30 fresh catalog recipes from 400 to 980 kcal
+    @BeforeEach
+    void seedCatalog() {
+        for (int i = 0; i < 30; i++) {
+            dsl.insertInto(RECIPE)
+                    .set(RECIPE.ID, FIRST_SEEDED_ID + i)
+                    .set(RECIPE.NAME, "Catalog recipe " + i)
+                    .set(RECIPE.PREP_TIME, 20)
+                    .set(RECIPE.SERVINGS, 1)
+                    .set(RECIPE.URL, "")
+                    .set(RECIPE.CALORIES, BigDecimal.valueOf(400 + 20 * i))
+                    .set(RECIPE.PROTEIN, BigDecimal.valueOf(30))
+                    .set(RECIPE.CARBOHYDRATES, BigDecimal.valueOf(60))
+                    .set(RECIPE.FAT, BigDecimal.valueOf(20))
+                    .set(RECIPE.FETCHED_AT, LocalDateTime.now())
+                    .onConflict(RECIPE.ID).doUpdate()
+                    .set(RECIPE.FETCHED_AT, LocalDateTime.now())
+                    .execute();
+        }
+        catalogIndex.refresh();
+        userId = userService.createUser(new CreateUserRequest(
+                "Local", "local-" + UUID.randomUUID() + "@mail.com", "pw", new BigDecimal("70"))).id();
+    }
+
+    @Test
+    void createPlan_serves_a_plan_from_the_local_catalog() {
+        long planId = mealPlanService.createPlan(userId, 2000, null, null, null, 1);
+
+        verify(recipeAPIAdapter, never()).generateMealPlan(any(), anyInt());
+        List<MealSlotDTO> meals = mealPlanService.getPlanById(userId, planId).meals();
+        assertEquals(List.of("breakfast", "lunch", "dinner"), meals.stream().map(MealSlotDTO::mealSlot).toList());
+
+        List<Long> ids = meals.stream().map(m -> m.recipe().id()).toList();
+        Map<Long, BigDecimal> kcal = dsl.select(RECIPE.ID, RECIPE.CALORIES).from(RECIPE)
+                .where(RECIPE.ID.in(ids))
+                .fetchMap(RECIPE.ID, RECIPE.CALORIES);
+        double total = ids.stream().mapToDouble(id -> kcal.get(id).doubleValue()).sum();
+        assertEquals(2000, total, 200);   // MealPlanService.THRESHOLD_KCAL
+
+        // slots are assigned by calories only (no meal types in the catalog): lightest first
+        assertTrue(kcal.get(ids.get(0)).compareTo(kcal.get(ids.get(1))) <= 0);
+        assertTrue(kcal.get(ids.get(1)).compareTo(kcal.get(ids.get(2))) <= 0);
+    }
+}
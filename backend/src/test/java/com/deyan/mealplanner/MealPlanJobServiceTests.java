@@ -0,0 +1,115 @@
+package com.deyan.mealplanner;
+
+import com.deyan.mealplanner.controller.GlobalExceptionHandler;
+import com.deyan.mealplanner.dto.CreateUserRequest;
+import com.deyan.mealplanner.dto.MealPlanJobDTO;
+import com.deyan.mealplanner.exceptions.ExternalApiQuotaException;
+import com.deyan.mealplanner.exceptions.JobQueueFullException;
+import com.deyan.mealplanner.exceptions.NotFoundException;
+import com.deyan.mealplanner.service.MealPlanJobService;
+import com.deyan.mealplanner.service.MealPlanService;
+import com.deyan.mealplanner.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+
+// one worker and one queue slot, so two users fill the service; finished jobs expire at once
+@SpringBootTest(properties = {
+        "mealplanner.plan-jobs.threads=1",
+        "mealplanner.plan-jobs.queue-capacity=1",
+        "mealplanner.plan-jobs.retention-minutes=0"
+})
+class MealPlanJobServiceTests extends AbstractIT {
+
+    @Autowired MealPlanJobService jobService;
+    @Autowired UserService userService;
+    @MockitoSpyBean MealPlanService mealPlanService;
+
+    long newUser() {
+        return userService.createUser(new CreateUserRequest(
+                "Jobs", "jobs-" + UUID.randomUUID() + "@mail.com", "pw", new BigDecimal("70"))).id();
+    }
+
+    MealPlanJobDTO awaitFinished(long userId, String jobId) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (System.nanoTime() < deadline) {
+            MealPlanJobDTO job = jobService.getJob(userId, jobId);
+            if (job.status().equals("DONE") || job.status().equals("FAILED")) {
+                return job;
+            }
+            Thread.sleep(20);
+        }
+        return fail("job " + jobId + " did not finish");
+    }
+
+    @Test
+    void dedupes_per_user_rejects_when_full_and_runs_queued_jobs_to_completion() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(inv -> {
+            started.countDown();
+            assertTrue(release.await(30, TimeUnit.SECONDS));
+            return inv.callRealMethod();
+        }).when(mealPlanService).createPlan(anyLong(), any(), any(), any(), any(), any());
+
+        long first = newUser(), second = newUser(), third = newUser();
+        MealPlanJobDTO running = jobService.submit(first, 2000, null, null, null, 1);
+        assertTrue(started.await(30, TimeUnit.SECONDS));
+        assertEquals("RUNNING", jobService.getJob(first, running.jobId()).status());
+
+        // a second submit of the same user returns the pending job
+        assertEquals(running.jobId(), jobService.submit(first, 2000, null, null, null, 7).jobId());
+
+        MealPlanJobDTO queued = jobService.submit(second, 2000, null, null, null, 1);
+        assertEquals("QUEUED", queued.status());
+
+        JobQueueFullException full = assertThrows(JobQueueFullException.class,
+                () -> jobService.submit(third, 2000, null, null, null, 1));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, new GlobalExceptionHandler().queueFull(full).getStatusCode());
+        // the rejected job leaves nothing behind for the user
+        assertThrows(JobQueueFullException.class, () -> jobService.submit(third, 2000, null, null, null, 1));
+
+        release.countDown();
+        MealPlanJobDTO done = awaitFinished(first, running.jobId());
+        assertEquals("DONE", done.status());
+        assertNotNull(done.planId());
+        assertNull(done.error());
+        assertEquals("DONE", awaitFinished(second, queued.jobId()).status());
+        assertThrows(NotFoundException.class, () -> jobService.getJob(second, running.jobId()));
+
+        // retention is zero: the next submit evicts the finished jobs
+        Thread.sleep(5);
+        MealPlanJobDTO later = jobService.submit(third, 2000, null, null, null, 1);
+        assertThrows(NotFoundException.class, () -> jobService.getJob(first, running.jobId()));
+        assertEquals("DONE", awaitFinished(third, later.jobId()).status());
+    }
+
+    @Test
+    void a_failed_job_is_reported_as_failed_instead_of_rethrown() throws Exception {
+        doThrow(new ExternalApiQuotaException("Spoonacular error 402 PAYMENT_REQUIRED apiKey=secret"))
+                .when(mealPlanService).createPlan(anyLong(), any(), any(), any(), any(), any());
+        long user = newUser();
+
+        MealPlanJobDTO job = awaitFinished(user, jobService.submit(user, 2000, null, null, null, 1).jobId());
+
+        assertEquals("FAILED", job.status());
+        assertNull(job.planId());
+        // the upstream detail stays in the log
+        assertEquals(ExternalApiQuotaException.DEFAULT_MESSAGE, job.error());
+        // the user can submit again once the job failed
+        assertNotEquals(job.jobId(), jobService.submit(user, 2000, null, null, null, 1).jobId());
+    }
+}
@@ -0,0 +1,477 @@
+package com.deyan.mealplanner;
+
+import com.deyan.mealplanner.config.StatementCounterConfig.StatementCounter;
+import com.deyan.mealplanner.dto.CreateUserRequest;
+import com.deyan.mealplanner.dto.MealPlanDTO;
+import com.deyan.mealplanner.dto.MealPlanDetailsDTO.ShoppingListItemDTO;
+import com.deyan.mealplanner.dto.MealPlanPageDTO;
+import com.deyan.mealplanner.dto.RecipeDetailsDTO;
+import com.deyan.mealplanner.exceptions.BadRequestException;
+import com.deyan.mealplanner.exceptions.ExternalApiUnavailableException;
+import com.deyan.mealplanner.exceptions.NotFoundException;
+import com.deyan.mealplanner.service.MealPlanService;
+import com.deyan.mealplanner.service.RecipeCatalogIndex;
+import com.deyan.mealplanner.service.UserService;
+import com.deyan.mealplanner.service.interfaces.RecipeAPIAdapter;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.jooq.DSLContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static com.deyan.mealplanner.jooq.tables.Ingredient.INGREDIENT;
+import static com.deyan.mealplanner.jooq.tables.MealPlan.MEAL_PLAN;
+import static com.deyan.mealplanner.jooq.tables.MealPlanRecipe.MEAL_PLAN_RECIPE;
+import static com.deyan.mealplanner.jooq.tables.Recipe.RECIPE;
+import static com.deyan.mealplanner.jooq.tables.RecipeIngredient.RECIPE_INGREDIENT;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest
+class MealPlanServiceTests extends AbstractIT {
+
+    @Autowired MealPlanService mealPlanService;
+    @Autowired UserService userService;
+    @Autowired DataSource dataSource;
+    @Autowired StatementCounter statements;
+    @Autowired DSLContext dsl;
+    @Autowired RecipeCatalogIndex catalogIndex;
+    @MockitoSpyBean(name = "recipeAPIAdapter") RecipeAPIAdapter recipeAPIAdapter;
+    @Value("${mealplanner.recipe-fetch.concurrency:6}") int fetchConcurrency;
+
+    long userId;
+
+    @BeforeEach
+    void createUser() {
+        userId = userService.createUser(new CreateUserRequest(
+                "Planner", "planner-" + UUID.randomUUID() + "@mail.com", "pw", new BigDecimal("70"))).id();
+    }
+
+    @Test
+    void createPlan_does_not_hold_a_connection_during_external_calls() throws Exception {
+        HikariPoolMXBean pool = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+        List<Integer> callerConnections = new CopyOnWriteArrayList<>();
+        List<Integer> workerConnections = new CopyOnWriteArrayList<>();
+        List<Boolean> transactionActive = new CopyOnWriteArrayList<>();
+
+        // stale stub recipes make every meal go through the remote widget on a fetch worker
+        dsl.update(RECIPE).set(RECIPE.FETCHED_AT, LocalDateTime.now().minusYears(1))
+                .where(RECIPE.ID.between(999L, 1005L)).execute();
+
+        // the calling thread reaches out with nothing in flight, so the pool must be idle
+        doAnswer(inv -> {
+            callerConnections.add(pool.getActiveConnections());
+            transactionActive.add(TransactionSynchronizationManager.isActualTransactionActive());
+            return inv.callRealMethod();
+        }).when(recipeAPIAdapter).generateMealPlan(any(), anyInt());
+        doAnswer(inv -> {
+            callerConnections.add(pool.getActiveConnections());
+            return inv.callRealMethod();
+        }).when(recipeAPIAdapter).getRecipes(any());
+        // on a worker, the other workers may be in a short catalog read, but this one holds nothing
+        doAnswer(inv -> {
+            workerConnections.add(pool.getActiveConnections());
+            return inv.callRealMethod();
+        }).when(recipeAPIAdapter).getRecipe(any());
+        doAnswer(inv -> {
+            workerConnections.add(pool.getActiveConnections());
+            return inv.callRealMethod();
+        }).when(recipeAPIAdapter).fetchNutritionWidget(any());
+
+        long planId = mealPlanService.createPlan(userId, 2000, null, null, null, 7);
+
+        assertTrue(planId > 0);
+        assertEquals(List.of(false), transactionActive);
+        assertFalse(callerConnections.isEmpty());
+        assertTrue(callerConnections.stream().allMatch(n -> n == 0),
+                "connections held during external calls: " + callerConnections);
+        assertFalse(workerConnections.isEmpty());
+        assertTrue(workerConnections.stream().allMatch(n -> n < fetchConcurrency),
+                "connections held during external calls on fetch workers: " + workerConnections);
+    }
+
+    @Test
+    void createPlan_writes_with_a_fixed_number_of_statements() {
+        // a first plan stores every stub recipe, so the measured plans are served from the catalog
+        mealPlanService.createPlan(userId, 2000, null, null, null, 7);
+
+        statements.start();
+        mealPlanService.createPlan(userId, 2000, null, null, null, 1);
+        int dayPlan = statements.stop();
+
+        statements.start();
+        mealPlanService.createPlan(userId, 2000, null, null, null, 7);
+        int weekPlan = statements.stop();
+
+        // catalog recipes and their ingredients (one bulk lookup, macros included, no per-meal reads),
+        // then plan, recipes, ingredients, recipe_ingredient, slots, list, list query, list items,
+        // snapshot assembly, snapshot write
+        assertEquals(12, weekPlan);
+        assertEquals(dayPlan, weekPlan);
+    }
+
+    @Test
+    void getPlanById_assembles_any_plan_with_a_fixed_number_of_statements() {
+        long dayPlanId = mealPlanService.createPlan(userId, 2000, null, null, null, 1);
+        long weekPlanId = mealPlanService.createPlan(userId, 2000, null, null, null, 7);
+        dsl.update(MEAL_PLAN).setNull(MEAL_PLAN.DETAILS_SNAPSHOT)
+                .where(MEAL_PLAN.ID.in(dayPlanId, weekPlanId)).execute();
+
+        statements.start();
+        var dayPlan = mealPlanService.getPlanById(userId, dayPlanId);
+        int dayReads = statements.stop();
+
+        statements.start();
+        var weekPlan = mealPlanService.getPlanById(userId, weekPlanId);
+        int weekReads = statements.stop();
+
+        // snapshot lookup, one MULTISET assembly, snapshot write
+        assertEquals(3, dayReads);
+        assertEquals(3, weekReads);
+        assertEquals(7, weekPlan.meals().size());
+        assertFalse(weekPlan.meals().get(0).recipe().ingredients().isEmpty());
+        assertFalse(dayPlan.shoppingList().isEmpty());
+    }
+
+    @Test
+    void getPlanById_serves_the_snapshot_until_a_recipe_changes() {
+        long planId = mealPlanService.createPlan(userId, 2000, null, null, null, 1);
+        var created = mealPlanService.getPlanById(userId, planId);
+
+        statements.start();
+        assertEquals(created, mealPlanService.getPlanById(userId, planId));
+        assertEquals(1, statements.stop());
+
+        Long recipeId = created.meals().get(0).recipe().id();
+        String originalName = created.meals().get(0).recipe().title();
+        var versionBefore = mealPlanService.getPlanVersion(userId, planId);
+        try {
+            dsl.update(RECIPE).set(RECIPE.NAME, "Renamed " + recipeId).where(RECIPE.ID.eq(recipeId)).execute();
+            assertNull(dsl.select(MEAL_PLAN.DETAILS_SNAPSHOT).from(MEAL_PLAN)
+                    .where(MEAL_PLAN.ID.eq(planId)).fetchOne(MEAL_PLAN.DETAILS_SNAPSHOT));
+            assertNotEquals(versionBefore.etag(), mealPlanService.getPlanVersion(userId, planId).etag());
+
+            var rebuilt = mealPlanService.getPlanById(userId, planId);
+            assertEquals("Renamed " + recipeId, rebuilt.meals().get(0).recipe().title());
+        } finally {
+            dsl.update(RECIPE).set(RECIPE.NAME, originalName).where(RECIPE.ID.eq(recipeId)).execute();
+        }
+    }
+
+    @Test
+    void createPlan_sums_shopping_list_amounts_across_slots() {
+        long planId = mealPlanService.createPlan(userId, 2000, null, null, null, 7);
+
+        var rice = mealPlanService.getPlanById(userId, planId).shoppingList().stream()
+                .filter(i -> i.name().equals("Rice"))
+                .toList();
+
+        // every stub recipe uses 100 g of rice, and the plan has 7 of them
+        assertEquals(1, rice.size());
+        assertEquals(0, new BigDecimal("700").compareTo(rice.get(0).amount()));
+        assertEquals("g", rice.get(0).unit());
+        assertEquals("700 g", rice.get(0).quantityText());
+    }
+
+    @Test
+    void getUserPlans_pages_through_history_without_gaps_or_repeats() {
+        List<Long> created = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            created.add(mealPlanService.createPlan(userId, 2000, null, null, null, 1));
+        }
+        // same created_at for every plan: the id tie-breaker must keep the order stable
+        dsl.update(MEAL_PLAN).set(MEAL_PLAN.CREATED_AT, LocalDateTime.of(2026, 1, 1, 12, 0))
+                .where(MEAL_PLAN.USER_ID.eq(userId)).execute();
+
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            MealPlanPageDTO page = mealPlanService.getUserPlans(userId, cursor, 2);
+            page.items().forEach(p -> seen.add(p.id()));
+            cursor = page.nextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        Collections.reverse(created);
+        assertEquals(created, seen);
+        assertEquals(created.get(0), mealPlanService.getLatestPlanVersion(userId).id());
+        assertThrows(BadRequestException.class, () -> mealPlanService.getUserPlans(userId, "not-a-cursor", 2));
+    }
+
+    @Test
+    void createPlan_stores_the_macros_of_the_meals_that_were_fetched() {
+        expireGeneratedRecipes();
+        doReturn(generatedPlan(1)).when(recipeAPIAdapter).generateMealPlan(any(), anyInt());
+        doThrow(new RuntimeException("boom")).when(recipeAPIAdapter).getRecipe(7_200_002L);
+        doAnswer(inv -> {
+            Map<Long, RecipeDetailsDTO> found = new LinkedHashMap<>();
+            for (Long id : inv.<Collection<Long>>getArgument(0)) {
+                if (id != 7_200_002L) found.put(id, recipeAPIAdapter.getRecipe(id));
+            }
+            return found;
+        }).when(recipeAPIAdapter).getRecipes(any());
+
+        long planId = mealPlanService.createPlan(userId, 1587, 90, 195, 54, 1);
+
+        // two of the three stub recipes were fetched; the plan's generated totals do not count
+        var plan = dsl.selectFrom(MEAL_PLAN).where(MEAL_PLAN.ID.eq(planId)).fetchOne();
+        assertEquals(List.of(1058, 60, 130, 36), List.of(plan.getActualKcal(), plan.getActualProteinG(),
+                plan.getActualCarbG(), plan.getActualFatG()));
+        assertEquals(2, mealPlanService.getPlanById(userId, planId).meals().size());
+    }
+
+    @Test
+    void createPlan_reports_a_bad_gateway_when_no_recipe_can_be_fetched() {
+        expireGeneratedRecipes();
+        doReturn(generatedPlan(1)).when(recipeAPIAdapter).generateMealPlan(any(), anyInt());
+        doThrow(new RuntimeException("boom")).when(recipeAPIAdapter).getRecipes(any());
+        doThrow(new RuntimeException("boom")).when(recipeAPIAdapter).getRecipe(any());
+
+        assertThrows(ExternalApiUnavailableException.class,
+                () -> mealPlanService.createPlan(userId, 2000, null, null, null, 1));
+    }
+
+    @Test
+    void swapSlot_replaces_one_slot_and_keeps_the_rest() {
+        doReturn(generatedPlan(7)).when(recipeAPIAdapter).generateMealPlan(any(), anyInt());
+        long planId = mealPlanService.createPlan(userId, 1587, null, null, null, 7);
+        var before = mealPlanService.getPlanById(userId, planId);
+        var actualBefore = dsl.selectFrom(MEAL_PLAN).where(MEAL_PLAN.ID.eq(planId)).fetchOne();
+        String etag = mealPlanService.getPlanVersion(userId, planId).etag();
+        var first = before.meals().get(0);
+        seedSwapRecipe();
+
+        clearInvocations(recipeAPIAdapter);
+        var after = mealPlanService.swapSlot(userId, planId, 0, first.mealSlot(), 7_300_000L);
+
+        // served from the catalog: no generation and no remote recipe fetch
+        verify(recipeAPIAdapter, never()).generateMealPlan(any(), anyInt());
+        verify(recipeAPIAdapter, never()).getRecipe(any());
+        assertEquals(7_300_000L, after.meals().get(0).recipe().id());
+        assertEquals(before.meals().subList(1, 21), after.meals().subList(1, 21));
+        assertEquals(after, mealPlanService.getPlanById(userId, planId));
+        assertNotEquals(etag, mealPlanService.getPlanVersion(userId, planId).etag());
+
+        // the stub recipe's rice and beans leave the list once, the lentils join it
+        var amounts = after.shoppingList().stream()
+                .collect(Collectors.toMap(ShoppingListItemDTO::name, ShoppingListItemDTO::amount));
+        assertEquals(0, new BigDecimal("2000").compareTo(amounts.get("Rice")));
+        assertEquals(0, new BigDecimal("3000").compareTo(amounts.get("Beans")));
+        assertEquals(0, new BigDecimal("120").compareTo(amounts.get("Swap lentils")));
+
+        // 700 kcal, P50, C80, F20 instead of 529 kcal, P30, C65, F18, spread over 7 days
+        var actualAfter = dsl.selectFrom(MEAL_PLAN).where(MEAL_PLAN.ID.eq(planId)).fetchOne();
+        assertEquals(List.of(actualBefore.getActualKcal() + 24, actualBefore.getActualProteinG() + 3,
+                        actualBefore.getActualCarbG() + 2, actualBefore.getActualFatG()),
+                List.of(actualAfter.getActualKcal(), actualAfter.getActualProteinG(),
+                        actualAfter.getActualCarbG(), actualAfter.getActualFatG()));
+
+        assertThrows(NotFoundException.class, () -> mealPlanService.swapSlot(userId, planId, 9, "dinner", 5001L));
+        assertThrows(BadRequestException.class, () -> mealPlanService.swapSlot(userId, planId, 0, "brunch", 5001L));
+    }
+
+    @Test
+    void swapSlot_without_a_recipe_picks_the_closest_catalog_recipe() {
+        doReturn(generatedPlan(7)).when(recipeAPIAdapter).generateMealPlan(any(), anyInt());
+        long planId = mealPlanService.createPlan(userId, 1587, null, null, null, 7);
+        var before = mealPlanService.getPlanById(userId, planId);
+        var actualBefore = dsl.selectFrom(MEAL_PLAN).where(MEAL_PLAN.ID.eq(planId)).fetchOne();
+        Set<Long> inPlan = before.meals().stream().map(m -> m.recipe().id()).collect(Collectors.toSet());
+        seedSwapRecipe();
+
+        var after = mealPlanService.swapSlot(userId, planId, 1, "breakfast", null);
+
+        long replacement = after.meals().get(3).recipe().id();
+        assertFalse(inPlan.contains(replacement));
+        assertEquals(before.meals().subList(0, 3), after.meals().subList(0, 3));
+        var macros = dsl.selectFrom(RECIPE).where(RECIPE.ID.eq(replacement)).fetchOne();
+        int kcalShift = macros.getCalories().subtract(BigDecimal.valueOf(529))
+                .divide(BigDecimal.valueOf(7), 0, RoundingMode.HALF_UP).intValue();
+        assertEquals(actualBefore.getActualKcal() + kcalShift,
+                dsl.selectFrom(MEAL_PLAN).where(MEAL_PLAN.ID.eq(planId)).fetchOne().getActualKcal());
+    }
+
+    @Test
+    void swapSlot_refuses_a_slot_that_changed_in_the_meantime() {
+        doReturn(generatedPlan(7)).when(recipeAPIAdapter).generateMealPlan(any(), anyInt());
+        long planId = mealPlanService.createPlan(userId, 1587, null, null, null, 7);
+        var before = mealPlanService.getPlanById(userId, planId);
+        seedSwapRecipe();
+        expireGeneratedRecipes();
+        // another swap lands on the slot while the replacement is being fetched
+        doAnswer(inv -> {
+            dsl.update(MEAL_PLAN_RECIPE).set(MEAL_PLAN_RECIPE.RECIPE_ID, 7_300_000L)
+                    .where(MEAL_PLAN_RECIPE.MEAL_PLAN_ID.eq(planId))
+                    .and(MEAL_PLAN_RECIPE.DAY_INDEX.eq((short) 0))
+                    .and(MEAL_PLAN_RECIPE.MEAL_SLOT.eq("breakfast"))
+                    .execute();
+            return inv.callRealMethod();
+        }).when(recipeAPIAdapter).getRecipe(7_200_099L);
+
+        assertThrows(IllegalStateException.class,
+                () -> mealPlanService.swapSlot(userId, planId, 0, "breakfast", 7_200_099L));
+
+        // the concurrent swap stays; the shopping list was not shifted a second time
+        var after = mealPlanService.getPlanById(userId, planId);
+        assertEquals(7_300_000L, dsl.select(MEAL_PLAN_RECIPE.RECIPE_ID).from(MEAL_PLAN_RECIPE)
+                .where(MEAL_PLAN_RECIPE.MEAL_PLAN_ID.eq(planId))
+                .and(MEAL_PLAN_RECIPE.DAY_INDEX.eq((short) 0))
+                .and(MEAL_PLAN_RECIPE.MEAL_SLOT.eq("breakfast"))
+                .fetchOne(MEAL_PLAN_RECIPE.RECIPE_ID));
+        assertEquals(before.shoppingList(), after.shoppingList());
+    }
+
+    // a catalog recipe with its own ingredient: 700 kcal, P50, C80, F20 and 120 g of lentils
+    void seedSwapRecipe() {
+        dsl.insertInto(INGREDIENT, INGREDIENT.ID, INGREDIENT.NAME)
+                .values(7_300_000L, "Swap lentils")
+                .onConflictDoNothing()
+                .execute();
+        dsl.insertInto(RECIPE)
+                .set(RECIPE.ID, 7_300_000L)
+                .set(RECIPE.NAME, "Swap recipe")
+                .set(RECIPE.PREP_TIME, 10)
+                .set(RECIPE.SERVINGS, 1)
+                .set(RECIPE.URL, "")
+                .set(RECIPE.CALORIES, BigDecimal.valueOf(700))
+                .set(RECIPE.PROTEIN, BigDecimal.valueOf(50))
+                .set(RECIPE.CARBOHYDRATES, BigDecimal.valueOf(80))
+                .set(RECIPE.FAT, BigDecimal.valueOf(20))
+                .set(RECIPE.FETCHED_AT, LocalDateTime.now())
+                .onConflict(RECIPE.ID).doUpdate()
+                .set(RECIPE.FETCHED_AT, LocalDateTime.now())
+                .execute();
+        dsl.insertInto(RECIPE_INGREDIENT, RECIPE_INGREDIENT.RECIPE_ID, RECIPE_INGREDIENT.INGREDIENT_ID,
+                        RECIPE_INGREDIENT.QUANTITY_G, RECIPE_INGREDIENT.UNIT)
+                .values(7_300_000L, 7_300_000L, BigDecimal.valueOf(120), "g")
+                .onConflictDoNothing()
+                .execute();
+    }
+
+    // three meals a day of stub recipes, which store 529 kcal, P30, C65, F18 from the nutrition widget
+    static MealPlanDTO generatedPlan(int days) {
+        List<MealPlanDTO.Meal> meals = new ArrayList<>();
+        for (int i = 0; i < 3 * days; i++) {
+            meals.add(new MealPlanDTO.Meal((long) i, 7_200_000L + i, "Generated " + i, "jpg", 15, 1, ""));
+        }
+        return new MealPlanDTO(meals, new MealPlanDTO.Nutrients(
+                BigDecimal.valueOf(1587), BigDecimal.valueOf(90), BigDecimal.valueOf(54), BigDecimal.valueOf(195)));
+    }
+
+    // makes the recipes of generatedPlan go to the remote adapter again
+    void expireGeneratedRecipes() {
+        dsl.update(RECIPE).set(RECIPE.FETCHED_AT, LocalDateTime.now().minusYears(1))
+                .where(RECIPE.ID.between(7_200_000L, 7_200_999L)).execute();
+    }
+
+    // seven catalog recipes, each closing the gap of a generated day to 2000 kcal, P150, C200, F70 exactly
+    void seedRepairRecipes() {
+        dsl.insertInto(INGREDIENT, INGREDIENT.ID, INGREDIENT.NAME)
+                .values(7_100_000L, "Repair oats")
+                .onConflictDoNothing()
+                .execute();
+        for (long id = 7_100_000L; id <= 7_100_006L; id++) {
+            dsl.insertInto(RECIPE)
+                    .set(RECIPE.ID, id)
+                    .set(RECIPE.NAME, "Repair recipe " + id)
+                    .set(RECIPE.PREP_TIME, 10)
+                    .set(RECIPE.SERVINGS, 1)
+                    .set(RECIPE.URL, "")
+                    .set(RECIPE.CALORIES, BigDecimal.valueOf(942))
+                    .set(RECIPE.PROTEIN, BigDecimal.valueOf(90))
+                    .set(RECIPE.CARBOHYDRATES, BigDecimal.valueOf(70))
+                    .set(RECIPE.FAT, BigDecimal.valueOf(34))
+                    .set(RECIPE.FETCHED_AT, LocalDateTime.now())
+                    .onConflict(RECIPE.ID).doUpdate()
+                    .set(RECIPE.FETCHED_AT, LocalDateTime.now())
+                    .execute();
+            dsl.insertInto(RECIPE_INGREDIENT, RECIPE_INGREDIENT.RECIPE_ID, RECIPE_INGREDIENT.INGREDIENT_ID,
+                            RECIPE_INGREDIENT.QUANTITY_G, RECIPE_INGREDIENT.UNIT)
+                    .values(id, 7_100_000L, BigDecimal.valueOf(80), "g")
+                    .onConflictDoNothing()
+                    .execute();
+        }
+        catalogIndex.refresh();
+    }
+
+    @Test
+    void createPlan_repairs_off_target_days_from_the_catalog() {
+        seedRepairRecipes();
+        doReturn(generatedPlan(7), generatedPlan(1), generatedPlan(7))
+                .when(recipeAPIAdapter).generateMealPlan(any(), anyInt());
+        // a first plan stores the generated recipes, so the measured plans are served from the catalog
+        mealPlanService.createPlan(userId, 2000, 150, 200, 70, 7);
+
+        statements.start();
+        mealPlanService.createPlan(userId, 2000, 150, 200, 70, 1);
+        int oneSwap = statements.stop();
+
+        statements.start();
+        long planId = mealPlanService.createPlan(userId, 2000, 150, 200, 70, 7);
+        int sevenSwaps = statements.stop();
+
+        // the repair happens before the plan is written: one catalog lookup for the replacements
+        assertEquals(oneSwap, sevenSwaps);
+
+        var deltas = dsl.selectFrom(MEAL_PLAN).where(MEAL_PLAN.ID.eq(planId)).fetchOne();
+        assertEquals(List.of(-413, -60, -5, -16), List.of(deltas.getKcalDeltaBefore(), deltas.getProteinDeltaBefore(),
+                deltas.getCarbDeltaBefore(), deltas.getFatDeltaBefore()));
+        assertEquals(List.of(0, 0, 0, 0), List.of(deltas.getKcalDeltaAfter(), deltas.getProteinDeltaAfter(),
+                deltas.getCarbDeltaAfter(), deltas.getFatDeltaAfter()));
+        assertEquals(List.of(2000, 150, 200, 70), List.of(deltas.getActualKcal(), deltas.getActualProteinG(),
+                deltas.getActualCarbG(), deltas.getActualFatG()));
+
+        // the first slot that closes the gap is breakfast; each day gets its own replacement
+        var plan = mealPlanService.getPlanById(userId, planId);
+        List<Long> recipeIds = plan.meals().stream().map(m -> m.recipe().id()).toList();
+        assertEquals(21, recipeIds.size());
+        Set<Long> breakfasts = new HashSet<>();
+        for (int i = 0; i < 21; i++) {
+            if (i % 3 == 0) {
+                assertTrue(recipeIds.get(i) >= 7_100_000L && recipeIds.get(i) <= 7_100_006L);
+                breakfasts.add(recipeIds.get(i));
+            } else {
+                assertEquals(7_200_000L + i, recipeIds.get(i));
+            }
+        }
+        assertEquals(7, breakfasts.size());
+
+        // the list is built from the repaired meals
+        var amounts = plan.shoppingList().stream()
+                .collect(Collectors.toMap(ShoppingListItemDTO::name, ShoppingListItemDTO::amount));
+        assertEquals(0, new BigDecimal("1400").compareTo(amounts.get("Rice")));
+        assertEquals(0, new BigDecimal("2100").compareTo(amounts.get("Beans")));
+        assertEquals(0, new BigDecimal("560").compareTo(amounts.get("Repair oats")));
+        assertEquals(plan, mealPlanService.getPlanById(userId, planId));
+    }
+}
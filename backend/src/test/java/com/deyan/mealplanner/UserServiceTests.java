@@ -0,0 +1,246 @@
+package com.deyan.mealplanner;
+
+import com.deyan.mealplanner.dto.CreateUserRequest;
+import com.deyan.mealplanner.dto.UserPageDTO;
+import com.deyan.mealplanner.exceptions.AlreadyExistsException;
+import com.deyan.mealplanner.exceptions.BadRequestException;
+import com.deyan.mealplanner.exceptions.NotFoundException;
+import com.deyan.mealplanner.service.AchievementService;
+import com.deyan.mealplanner.service.AchievementService.Metric;
+import com.deyan.mealplanner.service.AchievementService.UserMetrics;
+import com.deyan.mealplanner.service.OutboxDispatcher;
+import com.deyan.mealplanner.service.UserService;
+import org.jooq.DSLContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.deyan.mealplanner.jooq.tables.Achievement.ACHIEVEMENT;
+import static com.deyan.mealplanner.jooq.tables.UserAchievement.USER_ACHIEVEMENT;
+import static com.deyan.mealplanner.jooq.tables.UserProgress.USER_PROGRESS;
+import static com.deyan.mealplanner.jooq.tables.Users.USERS;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class UserServiceTests extends AbstractIT {
+
+    @Autowired UserService userService;
+    @Autowired AchievementService achievementService;
+    @Autowired OutboxDispatcher dispatcher;
+    @Autowired DSLContext dsl;
+
+    long userId;
+
+    @BeforeEach
+    void createUserWithoutLogs() {
+        userId = userService.createUser(new CreateUserRequest(
+                "Logger", "logger-" + UUID.randomUUID() + "@mail.com", "pw", new BigDecimal("80"))).id();
+        // start from a clean history: createUser already logged today's weight
+        dsl.deleteFrom(USER_PROGRESS).where(USER_PROGRESS.USER_ID.eq(userId)).execute();
+        dsl.update(USERS).set(USERS.DAY_STREAK, 0).where(USERS.ID.eq(userId)).execute();
+    }
+
+    @Test
+    void parallel_logs_on_the_same_day_store_exactly_one_entry() throws Exception {
+        int requests = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(requests);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            BigDecimal weight = new BigDecimal(79 + i);
+            results.add(pool.submit(() -> {
+                start.await();
+                return userService.addUserWeightEntry(userId, weight);
+            }));
+        }
+        start.countDown();
+
+        int succeeded = 0, rejected = 0;
+        for (Future<?> result : results) {
+            try {
+                result.get(30, TimeUnit.SECONDS);
+                succeeded++;
+            } catch (ExecutionException e) {
+                assertInstanceOf(AlreadyExistsException.class, e.getCause());
+                rejected++;
+            }
+        }
+        pool.shutdown();
+
+        assertEquals(1, succeeded);
+        assertEquals(requests - 1, rejected);
+        assertEquals(1, dsl.fetchCount(USER_PROGRESS, USER_PROGRESS.USER_ID.eq(userId)));
+        assertEquals(1, dsl.select(USERS.DAY_STREAK).from(USERS).where(USERS.ID.eq(userId)).fetchOne(USERS.DAY_STREAK));
+    }
+
+    @Test
+    void logging_continues_or_resets_the_streak() {
+        dsl.insertInto(USER_PROGRESS)
+                .set(USER_PROGRESS.USER_ID, userId)
+                .set(USER_PROGRESS.WEIGHT, new BigDecimal("80"))
+                .set(USER_PROGRESS.DATE, LocalDateTime.now().minusDays(1))
+                .execute();
+        dsl.update(USERS).set(USERS.DAY_STREAK, 4).where(USERS.ID.eq(userId)).execute();
+
+        userService.addUserWeightEntry(userId, new BigDecimal("79.5"));
+        assertEquals(5, userService.getUserById(userId).dayStreak());
+
+        // a gap of more than a day starts over
+        dsl.deleteFrom(USER_PROGRESS).where(USER_PROGRESS.USER_ID.eq(userId)).execute();
+        dsl.insertInto(USER_PROGRESS)
+                .set(USER_PROGRESS.USER_ID, userId)
+                .set(USER_PROGRESS.WEIGHT, new BigDecimal("80"))
+                .set(USER_PROGRESS.DATE, LocalDateTime.now().minusDays(3))
+                .execute();
+        userService.addUserWeightEntry(userId, new BigDecimal("79"));
+        assertEquals(1, userService.getUserById(userId).dayStreak());
+    }
+
+    @Test
+    void logging_for_an_unknown_user_fails() {
+        assertThrows(NotFoundException.class, () -> userService.addUserWeightEntry(-1L, BigDecimal.TEN));
+    }
+
+    @Test
+    void logging_unlocks_each_achievement_once() {
+        dsl.deleteFrom(USER_ACHIEVEMENT).where(USER_ACHIEVEMENT.USER_ID.eq(userId)).execute();
+
+        // evaluation is asynchronous: nothing is unlocked until the outbox is processed
+        userService.addUserWeightEntry(userId, new BigDecimal("80"));
+        assertTrue(userService.claimNewUnlocks(userId).isEmpty());
+        assertTrue(dispatcher.dispatch() > 0);
+
+        // "first log" (streak target 1) is announced on the next read, and only once
+        dsl.update(USER_PROGRESS).set(USER_PROGRESS.DATE, LocalDateTime.now().minusDays(1))
+                .where(USER_PROGRESS.USER_ID.eq(userId)).execute();
+        assertEquals(List.of(1L), userService.addUserWeightEntry(userId, new BigDecimal("79")).newAchievements());
+        dispatcher.dispatch();
+        assertTrue(userService.claimNewUnlocks(userId).isEmpty());
+
+        var logs = userService.getUserAchievements(userId).stream()
+                .filter(a -> a.id() == 4L).findFirst().orElseThrow();
+        assertEquals(2, logs.progress());
+        assertNull(logs.completedAt());
+    }
+
+    @Test
+    void an_older_event_processed_late_unlocks_but_does_not_rewind_progress() {
+        dsl.deleteFrom(USER_ACHIEVEMENT).where(USER_ACHIEVEMENT.USER_ID.eq(userId)).execute();
+        Map<Metric, Integer> newer = Map.of(Metric.STREAK, 1, Metric.TOTAL_LOGS, 11);
+        Map<Metric, Integer> older = Map.of(Metric.STREAK, 8, Metric.TOTAL_LOGS, 10);
+
+        achievementService.evaluate(Map.of(userId, new UserMetrics(20, newer, newer)));
+        achievementService.evaluate(Map.of(userId, new UserMetrics(10, older, older)));
+
+        var byId = userService.getUserAchievements(userId).stream()
+                .collect(Collectors.toMap(a -> a.id(), a -> a));
+        assertEquals(1, byId.get(2L).progress());          // 7-day streak: progress from the newer event...
+        assertNotNull(byId.get(2L).completedAt());         // ...but the older one reached the target
+        assertEquals(11, byId.get(4L).progress());         // 10 logs
+        assertNotNull(byId.get(4L).completedAt());
+    }
+
+    @Test
+    void new_achievements_are_data_only() {
+        Long id = dsl.insertInto(ACHIEVEMENT)
+                .set(ACHIEVEMENT.NAME, "Two logs")
+                .set(ACHIEVEMENT.DESCRIPTION, "Log your weight twice")
+                .set(ACHIEVEMENT.TARGET, 2)
+                .set(ACHIEVEMENT.METRIC, "TOTAL_LOGS")
+                .returning(ACHIEVEMENT.ID)
+                .fetchOne(ACHIEVEMENT.ID);
+        try {
+            achievementService.reloadRules();
+            dsl.insertInto(USER_PROGRESS)
+                    .set(USER_PROGRESS.USER_ID, userId)
+                    .set(USER_PROGRESS.WEIGHT, new BigDecimal("80"))
+                    .set(USER_PROGRESS.DATE, LocalDateTime.now().minusDays(1))
+                    .execute();
+
+            userService.addUserWeightEntry(userId, new BigDecimal("79"));
+            dispatcher.dispatch();
+
+            assertTrue(userService.claimNewUnlocks(userId).contains(id));
+        } finally {
+            dsl.deleteFrom(USER_ACHIEVEMENT).where(USER_ACHIEVEMENT.ACHIEVEMENT_ID.eq(id)).execute();
+            dsl.deleteFrom(ACHIEVEMENT).where(ACHIEVEMENT.ID.eq(id)).execute();
+            achievementService.reloadRules();
+        }
+    }
+
+    @Test
+    void logging_keeps_the_latest_weight_on_the_user() {
+        userService.addUserWeightEntry(userId, new BigDecimal("78.4"));
+
+        var user = userService.getUserById(userId);
+        assertEquals(0, new BigDecimal("78.4").compareTo(user.weight()));
+        assertNotNull(user.weightDate());
+        assertEquals(user, userService.findByEmail(user.email()));
+    }
+
+    @Test
+    void getAllUsers_pages_by_id_without_gaps_or_repeats() {
+        List<Long> created = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            created.add(userService.createUser(new CreateUserRequest(
+                    "Pager", "pager-" + UUID.randomUUID() + "@mail.com", "pw", new BigDecimal("70"))).id());
+        }
+
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            UserPageDTO page = userService.getAllUsers(cursor, 2);
+            assertTrue(page.items().size() <= 2);
+            page.items().forEach(u -> seen.add(u.id()));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertEquals(seen.stream().sorted().distinct().toList(), seen);
+        assertTrue(seen.containsAll(created));
+        assertThrows(BadRequestException.class, () -> userService.getAllUsers("not-a-cursor", 2));
+    }
+
+    @Test
+    void weight_series_downsamples_a_range_with_rolling_averages() {
+        LocalDate today = LocalDate.now();
+        for (int day = 0; day < 400; day++) {
+            dsl.insertInto(USER_PROGRESS)
+                    .set(USER_PROGRESS.USER_ID, userId)
+                    .set(USER_PROGRESS.WEIGHT, BigDecimal.valueOf(90 - day % 10))
+                    .set(USER_PROGRESS.DATE, today.minusDays(day).atTime(8, 0))
+                    .execute();
+        }
+
+        var year = userService.getWeightSeries(userId, today.minusDays(364), today, 100);
+        assertEquals(100, year.size());
+        assertEquals(today.minusDays(364), year.get(0).date().toLocalDate());
+        assertEquals(today, year.get(99).date().toLocalDate());
+
+        // all entries come back when the range is small; the average covers the week before the range too
+        var week = userService.getWeightSeries(userId, today.minusDays(6), today, 100);
+        assertEquals(7, week.size());
+        BigDecimal sum = BigDecimal.ZERO;
+        for (int day = 0; day < 7; day++) sum = sum.add(BigDecimal.valueOf(90 - (6 + day) % 10));
+        assertEquals(0, sum.divide(BigDecimal.valueOf(7), 2, RoundingMode.HALF_UP)
+                .compareTo(week.get(0).rollingAverage()));
+
+        assertThrows(BadRequestException.class, () -> userService.getWeightSeries(userId, today, today.minusDays(1), 100));
+    }
+}
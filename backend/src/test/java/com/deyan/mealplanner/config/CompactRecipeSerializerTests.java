@@ -0,0 +1,69 @@
+package com.deyan.mealplanner.config;
+
+import com.deyan.mealplanner.dto.RecipeDetailsDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactRecipeSerializerTests {
+
+    static RecipeDetailsDTO recipe(int ingredientCount) {
+        List<RecipeDetailsDTO.ExtendedIngredient> ingredients = new ArrayList<>();
+        for (int i = 0; i < ingredientCount; i++) {
+            ingredients.add(new RecipeDetailsDTO.ExtendedIngredient(
+                    i + 1, "ingredient " + i, new BigDecimal("12.50"), i % 2 == 0 ? "g" : null));
+        }
+        return new RecipeDetailsDTO(42L, "Pasta Ñoño", 25, 2,
+                new RecipeDetailsDTO.Nutrition(new BigDecimal("512.3"), new BigDecimal("20"), null,
+                        new BigDecimal("-1E+3")),
+                ingredients, null);
+    }
+
+    @Test
+    void round_trips_a_recipe() {
+        CompactRecipeSerializer serializer = new CompactRecipeSerializer(Integer.MAX_VALUE);
+        RecipeDetailsDTO original = recipe(3);
+
+        byte[] bytes = serializer.serialize(original);
+
+        assertEquals(CompactRecipeSerializer.MAGIC, bytes[0]);
+        assertEquals(0, bytes[2] & CompactRecipeSerializer.FLAG_DEFLATE);
+        assertEquals(original, serializer.deserialize(bytes));
+    }
+
+    @Test
+    void deflates_large_bodies() {
+        CompactRecipeSerializer serializer = new CompactRecipeSerializer(64);
+        RecipeDetailsDTO original = recipe(40);
+
+        byte[] bytes = serializer.serialize(original);
+
+        assertNotEquals(0, bytes[2] & CompactRecipeSerializer.FLAG_DEFLATE);
+        assertEquals(original, serializer.deserialize(bytes));
+    }
+
+    @Test
+    void is_smaller_than_json_and_reads_legacy_json_entries() {
+        GenericJackson2JsonRedisSerializer json = new GenericJackson2JsonRedisSerializer();
+        CompactRecipeSerializer serializer = new CompactRecipeSerializer(512);
+        RecipeDetailsDTO original = recipe(12);
+
+        byte[] legacy = json.serialize(original);
+
+        assertTrue(serializer.serialize(original).length < legacy.length);
+        assertEquals(original, serializer.deserialize(legacy));
+    }
+
+    @Test
+    void delegates_other_values_to_json() {
+        CompactRecipeSerializer serializer = new CompactRecipeSerializer(512);
+
+        assertEquals("plain", serializer.deserialize(serializer.serialize("plain")));
+        assertNull(serializer.deserialize(null));
+    }
+}
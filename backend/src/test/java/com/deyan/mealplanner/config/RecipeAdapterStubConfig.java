@@ -8,13 +8,17 @@ import com.deyan.mealplanner.dto.RecipeDetailsDTO.ExtendedIngredient;
 import com.deyan.mealplanner.dto.RecipeDetailsDTO.Nutrition;
 import com.deyan.mealplanner.dto.NutritionResponse;
 import com.deyan.mealplanner.service.interfaces.RecipeAPIAdapter;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -26,6 +30,7 @@ import java.util.Optional;
 public class RecipeAdapterStubConfig {
 
     @Bean
+    @Qualifier("remote")
     public RecipeAPIAdapter recipeAPIAdapter() {
 
         return new RecipeAPIAdapter() {
@@ -86,7 +91,17 @@ public class RecipeAdapterStubConfig {
                 );
             }
 
-            // ---------- 3)  fetchNutritionWidget -----------------------------
+            // ---------- 3)  getRecipes (bulk) --------------------------------
+            @Override
+            public Map<Long, RecipeDetailsDTO> getRecipes(Collection<Long> apiIds) {
+                Map<Long, RecipeDetailsDTO> out = new LinkedHashMap<>();
+                for (Long id : apiIds) {
+                    out.put(id, getRecipe(id));
+                }
+                return out;
+            }
+
+            // ---------- 4)  fetchNutritionWidget -----------------------------
             @Override
             public Optional<NutritionResponse> fetchNutritionWidget(Long id) {
                 return Optional.of(new NutritionResponse(
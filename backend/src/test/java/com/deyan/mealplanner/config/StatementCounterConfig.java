@@ -0,0 +1,58 @@
+package com.deyan.mealplanner.config;
+
+import org.jooq.ExecuteContext;
+import org.jooq.ExecuteListener;
+import org.jooq.ExecuteListenerProvider;
+import org.jooq.impl.DefaultExecuteListenerProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Registers a jOOQ listener that counts executed statements,
+ * used ONLY when the 'test' profile is active.
+ */
+@Profile("test")
+@Configuration
+public class StatementCounterConfig {
+
+    @Bean
+    public StatementCounter statementCounter() {
+        return new StatementCounter();
+    }
+
+    @Bean
+    public ExecuteListenerProvider statementCounterListener(StatementCounter counter) {
+        return new DefaultExecuteListenerProvider(counter);
+    }
+
+    /**
+     * Counts the statements executed between {@link #start()} and {@link #stop()} on any thread,
+     * so work handed to worker threads is counted too. The background pollers of the test
+     * profile run far apart, so a measurement sees only the code under test.
+     */
+    public static class StatementCounter implements ExecuteListener {
+
+        private final AtomicInteger count = new AtomicInteger();
+        private volatile boolean counting;
+
+        public void start() {
+            count.set(0);
+            counting = true;
+        }
+
+        public int stop() {
+            counting = false;
+            return count.get();
+        }
+
+        @Override
+        public void executeStart(ExecuteContext ctx) {
+            if (counting) {
+                count.incrementAndGet();
+            }
+        }
+    }
+}
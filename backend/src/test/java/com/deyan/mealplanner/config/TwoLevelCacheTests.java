@@ -0,0 +1,151 @@
+package com.deyan.mealplanner.config;
+
+import com.deyan.mealplanner.dto.CacheStatsDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TwoLevelCacheTests {
+
+    ConcurrentMapCacheManager l2;
+    ValueOperations<String, String> locks;
+    TwoLevelCacheManager manager;
+    Cache cache;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        l2 = new ConcurrentMapCacheManager("recipes");
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        locks = mock(ValueOperations.class);
+        when(redis.opsForValue()).thenReturn(locks);
+        when(locks.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+        manager = new TwoLevelCacheManager(l2, redis, 100, Duration.ofMinutes(1),
+                Duration.ofSeconds(10), Duration.ofSeconds(2));
+        cache = manager.getCache("recipes");
+    }
+
+    @Test
+    void loads_once_and_serves_repeated_reads_from_l1() {
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("pasta", cache.get("recipe:1", () -> {
+                loads.incrementAndGet();
+                return "pasta";
+            }));
+        }
+
+        CacheStatsDTO stats = manager.stats().get(0);
+        assertEquals(1, loads.get());
+        assertEquals(2, stats.l1().hits());
+        assertEquals(1, stats.l2().misses());
+        assertEquals("pasta", l2.getCache("recipes").get("recipe:1").get());
+    }
+
+    @Test
+    void fills_l1_from_l2() {
+        l2.getCache("recipes").put("recipe:2", "soup");
+
+        assertEquals("soup", cache.get("recipe:2").get());
+        l2.getCache("recipes").evict("recipe:2");
+
+        assertEquals("soup", cache.get("recipe:2").get());   // served from L1
+        assertEquals(1, manager.stats().get(0).l2().hits());
+    }
+
+    @Test
+    void invalidation_from_another_node_drops_the_l1_copy() {
+        cache.put("recipe:3", "salad");
+        l2.getCache("recipes").put("recipe:3", "new salad");
+
+        manager.onMessage(new DefaultMessage(
+                TwoLevelCacheManager.INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                "other-node|recipes|recipe:3".getBytes(StandardCharsets.UTF_8)), null);
+
+        assertEquals("new salad", cache.get("recipe:3").get());
+        assertEquals(1, manager.stats().get(0).l1().invalidations());
+    }
+
+    @Test
+    void counts_explicit_invalidations_but_not_redis_evictions() {
+        cache.put("recipe:9", "ramen");
+        cache.evict("recipe:9");
+        cache.clear();
+
+        CacheStatsDTO stats = manager.stats().get(0);
+        assertEquals(2, stats.l1().invalidations());
+        assertEquals(2, stats.l2().invalidations());
+        assertNull(stats.l2().evictions());
+    }
+
+    @Test
+    void concurrent_misses_share_one_load() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+
+        List<Future<Object>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(pool.submit(() -> cache.get("recipe:4", () -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                release.await();
+                return "stew";
+            })));
+        }
+        loading.await();
+        Thread.sleep(100);                      // let the other callers pile up
+        release.countDown();
+
+        for (Future<Object> r : results) {
+            assertEquals("stew", r.get(5, TimeUnit.SECONDS));
+        }
+        pool.shutdown();
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void waits_for_the_node_holding_the_lock() {
+        when(locks.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+        CompletableFuture.runAsync(() -> l2.getCache("recipes").put("recipe:5", "curry"),
+                CompletableFuture.delayedExecutor(150, TimeUnit.MILLISECONDS));
+
+        Object value = cache.get("recipe:5", () -> fail("loaded although another node holds the lock"));
+
+        assertEquals("curry", value);
+        assertEquals(1, manager.stats().get(0).coalescedLoads());
+    }
+
+    @Test
+    void get_all_merges_both_levels_and_skips_missing_keys() {
+        cache.put("recipe:6", "risotto");                    // in L1 and L2
+        l2.getCache("recipes").put("recipe:7", "tacos");     // only in L2
+
+        Map<Object, Object> found = cache instanceof TwoLevelCache twoLevel
+                ? twoLevel.getAll(List.of("recipe:6", "recipe:7", "recipe:8"))
+                : Map.of();
+
+        assertEquals(Map.of("recipe:6", "risotto", "recipe:7", "tacos"), found);
+        assertEquals(1, manager.stats().get(0).l2().hits());
+        assertEquals(1, manager.stats().get(0).l2().misses());
+    }
+}
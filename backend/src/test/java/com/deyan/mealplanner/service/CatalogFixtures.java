@@ -0,0 +1,66 @@
+package com.deyan.mealplanner.service;
+
+import com.deyan.mealplanner.service.RecipeCatalogIndex.Snapshot;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * In-memory catalog snapshots for the index, generator and repairer tests.
+ */
+final class CatalogFixtures {
+
+    private CatalogFixtures() { }
+
+    // recipe i: id 1000 + i, 100 + 10 i kcal, i g protein, 50 g carbs, 20 g fat
+    static Snapshot steps(int n) {
+        double[][] rows = new double[n][];
+        for (int i = 0; i < n; i++) {
+            rows[i] = new double[]{1000 + i, 100 + 10 * i, i, 50, 20};
+        }
+        return snapshot(rows);
+    }
+
+    // recipe i: id 1000 + i, 100 + 10 i kcal with a 25/50/25 energy split between protein, carbs and fat
+    static Snapshot balanced(int n) {
+        double[][] rows = new double[n][];
+        for (int i = 0; i < n; i++) {
+            double kcal = 100 + 10 * i;
+            rows[i] = new double[]{1000 + i, kcal, kcal * 0.25 / 4, kcal * 0.50 / 4, kcal * 0.25 / 9};
+        }
+        return snapshot(rows);
+    }
+
+    // ids 1..n between 200 and 900 kcal with varying macro splits
+    static Snapshot random(int n, long seed) {
+        Random random = new Random(seed);
+        double[][] rows = new double[n][];
+        for (int id = 1; id <= n; id++) {
+            double kcal = 200 + random.nextInt(700);
+            double proteinShare = 0.15 + random.nextDouble() * 0.25;
+            double fatShare = 0.20 + random.nextDouble() * 0.15;
+            double carbShare = 1 - proteinShare - fatShare;
+            rows[id - 1] = new double[]{id, kcal, kcal * proteinShare / 4, kcal * carbShare / 4, kcal * fatShare / 9};
+        }
+        return snapshot(rows);
+    }
+
+    /**
+     * Builds a snapshot from {id, kcal, protein, carbs, fat} rows, sorted by calories like the index.
+     */
+    static Snapshot snapshot(double[][] rows) {
+        double[][] sorted = rows.clone();
+        Arrays.sort(sorted, (a, b) -> Double.compare(a[1], b[1]));
+        int n = sorted.length;
+        long[] ids = new long[n];
+        double[] kcal = new double[n], protein = new double[n], carb = new double[n], fat = new double[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = (long) sorted[i][0];
+            kcal[i] = sorted[i][1];
+            protein[i] = sorted[i][2];
+            carb[i] = sorted[i][3];
+            fat[i] = sorted[i][4];
+        }
+        return new Snapshot(ids, kcal, protein, carb, fat);
+    }
+}
@@ -0,0 +1,62 @@
+package com.deyan.mealplanner.service;
+
+import com.deyan.mealplanner.service.IngredientRecipeIndex.Match;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngredientRecipeIndexTests {
+
+    // rice = 1, beans = 2, onion = 3, chicken = 4, cream = 5
+    static IngredientRecipeIndex index() {
+        IngredientRecipeIndex index = new IngredientRecipeIndex(null);
+        index.add(Map.of(
+                10L, List.of(1L, 2L),           // rice & beans
+                11L, List.of(1L, 3L, 4L),       // chicken rice
+                12L, List.of(4L, 5L, 3L, 2L),   // creamy chicken
+                13L, List.of(5L)));             // cream
+        return index;
+    }
+
+    @Test
+    void ranks_by_pantry_coverage_then_by_matched_ingredients() {
+        List<Match> matches = index().rank(List.of(1L, 2L, 3L), 0, 10);
+
+        assertEquals(List.of(
+                new Match(10, 2, 2),
+                new Match(11, 2, 3),
+                new Match(12, 2, 4)), matches);
+    }
+
+    @Test
+    void applies_minimum_coverage_and_limit() {
+        assertEquals(List.of(new Match(10, 2, 2)), index().rank(List.of(1L, 2L, 3L), 0.6, 10));
+        assertEquals(1, index().rank(List.of(1L, 2L, 3L), 0, 1).size());
+        assertEquals(List.of(), index().rank(List.of(99L), 0, 10));
+    }
+
+    @Test
+    void adding_a_known_link_again_changes_nothing() {
+        IngredientRecipeIndex index = index();
+        index.add(Map.of(10L, List.of(1L, 2L), 13L, List.of(5L, 1L)));
+
+        assertEquals(List.of(new Match(10, 2, 2), new Match(13, 1, 2)), index.rank(List.of(1L, 2L), 0.5, 10));
+    }
+
+    @Test
+    void rebuild_replaces_the_index_and_keeps_links_added_while_loading() {
+        IngredientRecipeIndex index = index();
+
+        index.rebuild(() -> {
+            // committed after the load read its rows
+            index.add(Map.of(14L, List.of(3L)));
+            return Map.of(10L, List.of(1L, 2L));
+        });
+
+        assertEquals(List.of(new Match(10, 2, 2), new Match(14, 1, 1)), index.rank(List.of(1L, 2L, 3L), 0, 10));
+        assertEquals(List.of(), index.rank(List.of(4L, 5L), 0, 10));
+    }
+}
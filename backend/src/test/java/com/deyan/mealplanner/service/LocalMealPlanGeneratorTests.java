@@ -0,0 +1,63 @@
+package com.deyan.mealplanner.service;
+
+import com.deyan.mealplanner.service.LocalMealPlanGenerator.Target;
+import com.deyan.mealplanner.service.RecipeCatalogIndex.Snapshot;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalMealPlanGeneratorTests {
+
+    @Test
+    void builds_a_week_within_the_tolerances_without_repeating_recipes() {
+        Snapshot catalog = CatalogFixtures.random(200, 7);
+        Target target = new Target(2000, 130, 220, 65);
+
+        int[][] plan = LocalMealPlanGenerator.search(catalog, target, 7, 8, 32, new Random(1));
+
+        assertNotNull(plan);
+        Set<Integer> seen = new HashSet<>();
+        for (int[] day : plan) {
+            assertEquals(3, day.length);
+            assertTrue(LocalMealPlanGenerator.isMet(catalog, target, day));
+            // breakfast is the lightest meal, dinner the heaviest
+            assertTrue(catalog.kcal(day[0]) <= catalog.kcal(day[1]));
+            assertTrue(catalog.kcal(day[1]) <= catalog.kcal(day[2]));
+            for (int i : day) assertTrue(seen.add(i));
+        }
+    }
+
+    @Test
+    void gives_up_when_the_catalog_cannot_reach_the_target() {
+        assertNull(LocalMealPlanGenerator.search(CatalogFixtures.random(200, 7),
+                new Target(5000, null, null, null), 1, 8, 32, new Random(1)));
+    }
+
+    @Test
+    void leaves_unset_macros_unconstrained() {
+        Snapshot catalog = CatalogFixtures.random(200, 7);
+        Target target = new Target(1500, null, null, null);
+
+        int[][] plan = LocalMealPlanGenerator.search(catalog, target, 1, 8, 32, new Random(1));
+
+        assertNotNull(plan);
+        double kcal = 0;
+        for (int i : plan[0]) kcal += catalog.kcal(i);
+        assertEquals(1500, kcal, MealPlanService.THRESHOLD_KCAL);
+    }
+
+    @Test
+    void a_small_neighbourhood_still_finds_a_plan() {
+        Snapshot catalog = CatalogFixtures.random(200, 7);
+        Target target = new Target(2000, 130, 220, 65);
+
+        int[][] plan = LocalMealPlanGenerator.search(catalog, target, 1, 8, 4, new Random(1));
+
+        assertNotNull(plan);
+        assertTrue(LocalMealPlanGenerator.isMet(catalog, target, plan[0]));
+    }
+}
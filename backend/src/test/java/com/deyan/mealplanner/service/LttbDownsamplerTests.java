@@ -0,0 +1,108 @@
+package com.deyan.mealplanner.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LttbDownsamplerTests {
+
+    static List<double[]> downsample(List<double[]> points, int threshold) {
+        LttbDownsampler<double[]> sampler = new LttbDownsampler<>(points.size(), threshold, p -> p[0], p -> p[1]);
+        points.forEach(sampler::add);
+        return sampler.result();
+    }
+
+    // textbook LTTB over the whole list, with the same bucket boundaries
+    static List<double[]> reference(List<double[]> points, int threshold) {
+        int n = points.size();
+        double size = (double) (n - 2) / (threshold - 2);
+        List<List<double[]>> buckets = new ArrayList<>();
+        for (int b = 0; b < threshold - 2; b++) buckets.add(new ArrayList<>());
+        for (int i = 1; i < n - 1; i++) buckets.get((int) ((i - 1) / size)).add(points.get(i));
+
+        List<double[]> out = new ArrayList<>(List.of(points.get(0)));
+        for (int b = 0; b < buckets.size(); b++) {
+            double[] a = out.get(out.size() - 1);
+            double cx, cy;
+            if (b + 1 < buckets.size()) {
+                cx = buckets.get(b + 1).stream().mapToDouble(p -> p[0]).average().orElseThrow();
+                cy = buckets.get(b + 1).stream().mapToDouble(p -> p[1]).average().orElseThrow();
+            } else {
+                cx = points.get(n - 1)[0];
+                cy = points.get(n - 1)[1];
+            }
+            double[] best = null;
+            double bestArea = -1;
+            for (double[] p : buckets.get(b)) {
+                double area = Math.abs((a[0] - cx) * (p[1] - a[1]) - (a[0] - p[0]) * (cy - a[1]));
+                if (area > bestArea) {
+                    bestArea = area;
+                    best = p;
+                }
+            }
+            out.add(best);
+        }
+        out.add(points.get(n - 1));
+        return out;
+    }
+
+    static List<double[]> series(int n, long seed) {
+        Random random = new Random(seed);
+        List<double[]> points = new ArrayList<>();
+        double y = 80;
+        for (int i = 0; i < n; i++) {
+            y += random.nextGaussian() * 0.3;
+            points.add(new double[]{i * 86_400, y});
+        }
+        return points;
+    }
+
+    @Test
+    void keeps_everything_when_the_threshold_is_not_below_the_count() {
+        List<double[]> points = series(5, 1);
+        assertEquals(points, downsample(points, 5));
+        assertEquals(points, downsample(points, 200));
+        assertEquals(List.of(), downsample(List.of(), 200));
+    }
+
+    @Test
+    void streaming_matches_the_whole_list_algorithm() {
+        for (int n : new int[]{4, 7, 100, 365, 1000}) {
+            for (int threshold : new int[]{3, 4, 10, 50}) {
+                if (threshold >= n) continue;
+                List<double[]> points = series(n, n * 31L + threshold);
+                List<double[]> streamed = downsample(points, threshold);
+
+                assertEquals(threshold, streamed.size(), "n=" + n + " threshold=" + threshold);
+                assertEquals(reference(points, threshold), streamed, "n=" + n + " threshold=" + threshold);
+            }
+        }
+    }
+
+    @Test
+    void keeps_the_ends_and_a_spike() {
+        List<double[]> points = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            points.add(new double[]{i, i == 50 ? 10 : 0});
+        }
+
+        List<double[]> kept = downsample(points, 10);
+
+        assertSame(points.get(0), kept.get(0));
+        assertSame(points.get(99), kept.get(9));
+        assertTrue(kept.contains(points.get(50)));
+    }
+
+    @Test
+    void rejects_a_count_mismatch() {
+        LttbDownsampler<double[]> sampler = new LttbDownsampler<>(2, 200, p -> p[0], p -> p[1]);
+        sampler.add(new double[]{0, 0});
+        assertThrows(IllegalStateException.class, sampler::result);
+        sampler.add(new double[]{1, 0});
+        assertThrows(IllegalStateException.class, () -> sampler.add(new double[]{2, 0}));
+    }
+}
@@ -0,0 +1,71 @@
+package com.deyan.mealplanner.service;
+
+import com.deyan.mealplanner.service.LocalMealPlanGenerator.Target;
+import com.deyan.mealplanner.service.PlanRepairer.Candidate;
+import com.deyan.mealplanner.service.PlanRepairer.Swap;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlanRepairerTests {
+
+    static final long NO_DEADLINE = Long.MAX_VALUE;
+    static final RecipeCatalogIndex.Snapshot CATALOG = CatalogFixtures.balanced(150);
+
+    static Candidate meal(long id, double kcal) {
+        return new Candidate(id, kcal, kcal * 0.25 / 4, kcal * 0.50 / 4, kcal * 0.25 / 9);
+    }
+
+    @Test
+    void one_swap_fixes_a_day_that_is_400_kcal_over() {
+        Target target = new Target(1500, null, null, null);
+        Candidate[] day = {meal(1, 300), meal(2, 400), meal(3, 1200)};
+
+        List<Swap> swaps = PlanRepairer.repair(CATALOG, List.<Candidate[]>of(day), target,
+                new HashSet<>(Set.of(1L, 2L, 3L)), NO_DEADLINE, 20);
+
+        assertEquals(1, swaps.size());
+        assertTrue(PlanRepairer.isMet(target, apply(CATALOG, day, swaps)));
+    }
+
+    @Test
+    void swaps_more_meals_only_when_one_is_not_enough() {
+        // protein is far off on every meal: one replacement cannot close a 90 g gap
+        Target target = new Target(1800, 110, 225, 50);
+        Candidate[] day = {
+                new Candidate(1, 600, 5, 140, 5),
+                new Candidate(2, 600, 5, 140, 5),
+                new Candidate(3, 600, 5, 140, 5)};
+
+        List<Swap> swaps = PlanRepairer.repair(CATALOG, List.<Candidate[]>of(day), target,
+                new HashSet<>(Set.of(1L, 2L, 3L)), NO_DEADLINE, 20);
+
+        assertTrue(swaps.size() >= 2);
+        assertTrue(PlanRepairer.isMet(target, apply(CATALOG, day, swaps)));
+    }
+
+    @Test
+    void leaves_days_within_tolerance_alone_and_respects_the_deadline() {
+        Target target = new Target(1500, null, null, null);
+        Candidate[] good = {meal(1, 400), meal(2, 500), meal(3, 600)};
+        Candidate[] bad = {meal(4, 900), meal(5, 900), meal(6, 900)};
+
+        assertEquals(List.of(), PlanRepairer.repair(CATALOG, List.<Candidate[]>of(good), target,
+                new HashSet<>(), NO_DEADLINE, 20));
+        assertEquals(List.of(), PlanRepairer.repair(CATALOG, List.<Candidate[]>of(bad), target,
+                new HashSet<>(), System.nanoTime() - 1, 20));
+    }
+
+    private static Candidate[] apply(RecipeCatalogIndex.Snapshot catalog, Candidate[] day, List<Swap> swaps) {
+        Candidate[] out = day.clone();
+        for (Swap swap : swaps) {
+            int i = (int) (swap.recipeId() - 1000);
+            out[swap.slot()] = new Candidate(swap.recipeId(), catalog.kcal(i), catalog.protein(i), catalog.carb(i), catalog.fat(i));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,57 @@
+package com.deyan.mealplanner.service;
+
+import com.deyan.mealplanner.service.RecipeCatalogIndex.Range;
+import com.deyan.mealplanner.service.RecipeCatalogIndex.Snapshot;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecipeCatalogIndexTests {
+
+    @Test
+    void finds_recipes_within_all_ranges() {
+        Snapshot index = CatalogFixtures.steps(100);
+
+        // 500-700 kcal is i = 40..60; at least 50 g protein leaves i = 50..60
+        int[] found = index.find(Range.between(500, 700), Range.atLeast(50), Range.ANY, Range.ANY);
+
+        assertArrayEquals(IntStream.rangeClosed(50, 60).toArray(), found);
+        assertEquals(1050, index.id(found[0]));
+        assertEquals(0, index.find(Range.between(500, 700), Range.ANY, Range.atMost(10), Range.ANY).length);
+    }
+
+    @Test
+    void nearest_matches_a_full_scan() {
+        Snapshot index = CatalogFixtures.steps(100);
+        double kcal = 645, protein = 70, carb = 45, fat = 25;
+
+        int[] nearest = index.nearest(kcal, protein, carb, fat, 5);
+
+        int[] expected = IntStream.range(0, index.size()).boxed()
+                .sorted(Comparator.comparingDouble(i -> distance(index, i, kcal, protein, carb, fat)))
+                .limit(5)
+                .mapToInt(Integer::intValue)
+                .toArray();
+        assertArrayEquals(expected, nearest);
+    }
+
+    @Test
+    void handles_small_and_empty_catalogs() {
+        assertEquals(2, CatalogFixtures.steps(2).nearest(500, 0, 0, 0, 5).length);
+        assertEquals(0, Snapshot.EMPTY.nearest(500, 0, 0, 0, 5).length);
+        assertEquals(0, Snapshot.EMPTY.find(Range.ANY, Range.ANY, Range.ANY, Range.ANY).length);
+        assertTrue(Arrays.equals(new int[]{0, 1}, CatalogFixtures.steps(2).find(Range.ANY, Range.ANY, Range.ANY, Range.ANY)));
+    }
+
+    private static double distance(Snapshot s, int i, double kcal, double protein, double carb, double fat) {
+        double k = (s.kcal(i) - kcal) / MealPlanService.THRESHOLD_KCAL;
+        double p = (s.protein(i) - protein) / MealPlanService.THRESHOLD_MACRO;
+        double c = (s.carb(i) - carb) / MealPlanService.THRESHOLD_MACRO;
+        double f = (s.fat(i) - fat) / MealPlanService.THRESHOLD_MACRO;
+        return k * k + p * p + c * c + f * f;
+    }
+}
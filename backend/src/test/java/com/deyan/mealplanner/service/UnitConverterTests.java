@@ -0,0 +1,46 @@
+package com.deyan.mealplanner.service;
+
+import com.deyan.mealplanner.service.UnitConverter.Quantity;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UnitConverterTests {
+
+    final UnitConverter units = new UnitConverter();
+
+    @Test
+    void converts_mass_to_grams() {
+        assertEquals(new Quantity(new BigDecimal("453.59"), "g"), units.toCanonical("beef", BigDecimal.ONE, "lb"));
+        assertEquals(new Quantity(new BigDecimal("250.00"), "g"), units.toCanonical("rice", new BigDecimal("250"), " G "));
+    }
+
+    @Test
+    void converts_volume_to_grams_when_the_density_is_known() {
+        assertEquals(new Quantity(new BigDecimal("218.40"), "g"), units.toCanonical("extra virgin olive oil", BigDecimal.ONE, "cup"));
+        assertEquals(new Quantity(new BigDecimal("30.00"), "ml"), units.toCanonical("lemon juice", new BigDecimal("2"), "tbsp"));
+    }
+
+    @Test
+    void keeps_counts_and_unknown_units() {
+        assertEquals(new Quantity(new BigDecimal("2.00"), "pc"), units.toCanonical("garlic", new BigDecimal("2"), "cloves"));
+        assertEquals(new Quantity(new BigDecimal("1.00"), "pc"), units.toCanonical("egg", BigDecimal.ONE, null));
+        assertEquals(new Quantity(new BigDecimal("1.00"), "handful"), units.toCanonical("spinach", BigDecimal.ONE, "Handful"));
+    }
+
+    @Test
+    void matches_densities_on_the_head_word_only() {
+        // compounds and substrings of a known ingredient stay in millilitres
+        assertEquals(new Quantity(new BigDecimal("240.00"), "ml"), units.toCanonical("sugar snap peas", BigDecimal.ONE, "cup"));
+        assertEquals(new Quantity(new BigDecimal("240.00"), "ml"), units.toCanonical("licorice", BigDecimal.ONE, "cup"));
+        assertEquals(new Quantity(new BigDecimal("240.00"), "ml"), units.toCanonical("ricotta", BigDecimal.ONE, "cup"));
+        assertEquals(new Quantity(new BigDecimal("240.00"), "ml"), units.toCanonical("cream cheese", BigDecimal.ONE, "cup"));
+
+        assertEquals(new Quantity(new BigDecimal("247.20"), "g"), units.toCanonical("buttermilk", BigDecimal.ONE, "cup"));
+        assertEquals(new Quantity(new BigDecimal("242.40"), "g"), units.toCanonical("rice vinegar", BigDecimal.ONE, "cup"));
+        assertEquals(new Quantity(new BigDecimal("223.20"), "g"), units.toCanonical("Light Brown Sugar", BigDecimal.ONE, "cup"));
+        assertEquals(new Quantity(new BigDecimal("127.20"), "g"), units.toCanonical("flour, all-purpose", BigDecimal.ONE, "cup"));
+    }
+}
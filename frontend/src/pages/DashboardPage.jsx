@@ -40,6 +40,7 @@ export default function DashboardPage() {
 
  //State variables
   const [plans, setPlans] = useState([]);
+  const [plansCursor, setPlansCursor] = useState(null);
   const [selectedPlanId, setSelectedPlanId] = useState(null);
   const [macros, setMacros] = useState({});
   const [mealPlan, setMealPlan] = useState([]);
@@ -84,24 +85,64 @@ export default function DashboardPage() {
     const data = await fetchJson(`/api/users/${userId}/achievements`);
     if (Array.isArray(data)) setAchievements(data);
   };
-  const toastNewUnlocks = (ids = []) => {
+  const toastNewUnlocks = (ids = [], list = achievements) => {
     ids.forEach((id) => {
-      const a = achievements.find((x) => x.id === id);
+      const a = list.find((x) => x.id === id);
       if (a) toast.success(`🏅 Achievement unlocked: ${a.name}`);
     });
   };
+  // achievements are evaluated in the background; each unlock is handed out once
+  const checkUnlocks = async () => {
+    const ids = await fetchJson(`/api/users/${userId}/achievements/claim`, { method: 'POST' });
+    if (!Array.isArray(ids) || !ids.length) return false;
+    const data = await fetchJson(`/api/users/${userId}/achievements`);
+    if (Array.isArray(data)) {
+      setAchievements(data);
+      toastNewUnlocks(ids, data);
+    }
+    return true;
+  };
+  // after a weight log, retry with a short backoff until the background evaluation has run
+  const pollUnlocks = (delay = 500, attempts = 5) => {
+    setTimeout(async () => {
+      const found = await checkUnlocks();
+      if (!found && attempts > 1) pollUnlocks(delay * 2, attempts - 1);
+    }, delay);
+  };
   /* ---------------- Load plans list ---------------- */
-  useEffect(() => {
-    (async () => {
-      const list = await fetchJson(`/api/users/${userId}/meal-plans`);
-      if (Array.isArray(list)) {
-        setPlans(list);
-        if (list.length) setSelectedPlanId(list[0].id);
-      }
-    })();
-  }, []);
+  // one page of saved plans, newest first; the next page's cursor comes back in X-Next-Cursor
+  const fetchPlansPage = async (cursor) => {
+    const query = cursor ? `?cursor=${encodeURIComponent(cursor)}` : '';
+    setError(null);
+    setLoading(true);
+    try {
+      const res = await apiFetch(`/api/users/${userId}/meal-plans${query}`);
+      if (!res.ok) throw new Error(res.status);
+      const items = await res.json();
+      return Array.isArray(items) ? { items, next: res.headers.get('X-Next-Cursor') } : null;
+    } catch (e) {
+      setError(e.message);
+      return null;
+    } finally {
+      setLoading(false);
+    }
+  };
+  const reloadPlans = async (selectId) => {
+    const page = await fetchPlansPage();
+    if (!page) return;
+    setPlans(page.items);
+    setPlansCursor(page.next);
+    setSelectedPlanId(selectId ?? page.items[0]?.id ?? null);
+  };
+  const loadOlderPlans = async () => {
+    const page = await fetchPlansPage(plansCursor);
+    if (!page) return;
+    setPlans((prev) => [...prev, ...page.items]);
+    setPlansCursor(page.next);
+  };
+  useEffect(() => { reloadPlans(); }, []);
 
-  useEffect(() => { loadAchievements();}, []);
+  useEffect(() => { loadAchievements(); checkUnlocks(); }, []);
   /* ---------------- Parse plan details ---------------- */
   const parsePlanDetails = (data) => {
     if (!data) return;
@@ -234,11 +275,7 @@ export default function DashboardPage() {
 
     if (created?.id) {
       // Re-fetch the plans list AFTER creating
-      const list = await fetchJson(`/api/users/${userId}/meal-plans`);
-      if (Array.isArray(list)) {
-        setPlans(list);
-        setSelectedPlanId(created.id);
-      }
+      await reloadPlans(created.id);
     } else {
       toast.error("Failed to generate plan.");
     }
@@ -253,9 +290,7 @@ export default function DashboardPage() {
 
     if (newPlan?.id) {
       // Re-fetch the plan list to include the new one
-      const list = await fetchJson(`/api/users/${userId}/meal-plans`);
-      setPlans(list);
-      setSelectedPlanId(newPlan.id);
+      await reloadPlans(newPlan.id);
     }
   };
   /* ---------------- Render ---------------- */
@@ -357,6 +392,14 @@ export default function DashboardPage() {
               Delete
             </button>
           </label>
+          {plansCursor && (
+            <button
+              onClick={loadOlderPlans}
+              className="text-xs px-3 py-1 rounded bg-gray-200 hover:bg-gray-300 text-gray-800"
+            >
+              Load older plans
+            </button>
+          )}
         </section>
 
         {/* Targets & controls */}
@@ -472,8 +515,9 @@ export default function DashboardPage() {
             onSuccess={(payload) => {
               if (payload.newAchievements?.length) {
                 toastNewUnlocks(payload.newAchievements);
-                loadAchievements();
               }
+              loadAchievements();
+              pollUnlocks();
             }}
           />)
       }